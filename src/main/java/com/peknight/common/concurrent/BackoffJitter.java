@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 常用的退避策略，随机数均使用ThreadLocalRandom，多线程间无竞争、互不相关
+ * 以下 ceiling = slot * 2^min(retryCount, maximumRetryCount)
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public enum BackoffJitter implements BackoffStrategy {
+
+    /** 二进制指数退避：随机等待 [0, 2^min(retryCount, maximumRetryCount)) 个时间片（整数个） */
+    BINARY_EXPONENTIAL {
+        @Override
+        public long nextDelay(int retryCount, long previousDelay, long slot, int maximumRetryCount) {
+            long slots = 1L << exponent(retryCount, maximumRetryCount);
+            return ThreadLocalRandom.current().nextLong(slots) * slot;
+        }
+    },
+
+    /** 完全抖动：在 [0, ceiling] 内均匀随机 */
+    FULL {
+        @Override
+        public long nextDelay(int retryCount, long previousDelay, long slot, int maximumRetryCount) {
+            return random(0, ceiling(retryCount, slot, maximumRetryCount));
+        }
+    },
+
+    /** 等值抖动：固定等待ceiling的一半，另一半随机 */
+    EQUAL {
+        @Override
+        public long nextDelay(int retryCount, long previousDelay, long slot, int maximumRetryCount) {
+            long half = ceiling(retryCount, slot, maximumRetryCount) / 2;
+            return half + random(0, half);
+        }
+    },
+
+    /** 去相关抖动：在 [slot, 上一次等待时间 * 3] 内随机，不超过 slot * 2^maximumRetryCount */
+    DECORRELATED {
+        @Override
+        public long nextDelay(int retryCount, long previousDelay, long slot, int maximumRetryCount) {
+            long cap = ceiling(maximumRetryCount, slot, maximumRetryCount);
+            long upper = previousDelay > Long.MAX_VALUE / 3 ? Long.MAX_VALUE : Math.max(slot, previousDelay * 3);
+            return Math.min(cap, random(slot, upper));
+        }
+    },
+
+    /** 有上限的指数退避，不抖动：固定等待ceiling */
+    CAPPED {
+        @Override
+        public long nextDelay(int retryCount, long previousDelay, long slot, int maximumRetryCount) {
+            return ceiling(retryCount, slot, maximumRetryCount);
+        }
+    };
+
+    private static int exponent(int retryCount, int maximumRetryCount) {
+        return Math.max(0, Math.min(Math.min(retryCount, maximumRetryCount), 62));
+    }
+
+    private static long ceiling(int retryCount, long slot, int maximumRetryCount) {
+        int exponent = exponent(retryCount, maximumRetryCount);
+        return slot > Long.MAX_VALUE >> exponent ? Long.MAX_VALUE : slot << exponent;
+    }
+
+    /**
+     * [origin, bound] 内均匀随机
+     */
+    private static long random(long origin, long bound) {
+        if (bound <= origin) {
+            return origin;
+        }
+        return bound == Long.MAX_VALUE ? ThreadLocalRandom.current().nextLong(origin, bound)
+                : ThreadLocalRandom.current().nextLong(origin, bound + 1);
+    }
+}
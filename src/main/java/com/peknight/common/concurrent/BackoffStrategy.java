@@ -0,0 +1,43 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+/**
+ * 退避策略，计算每次重试前的等待时间
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public interface BackoffStrategy {
+
+    /**
+     * @param retryCount 第几次重试，从1开始
+     * @param previousDelay 上一次重试前的等待时间，首次重试时为0
+     * @param slot 退避时间片
+     * @param maximumRetryCount 指数的上限，等待时间最多为 slot * 2^maximumRetryCount
+     * @return 等待时间，单位与slot相同
+     */
+    long nextDelay(int retryCount, long previousDelay, long slot, int maximumRetryCount);
+}
@@ -29,11 +29,22 @@ import com.peknight.common.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Random;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 二进制指数退避算法
+ * backoff/backoffAsync按RetryPolicy判断成功、可重试（可带建议等待时间）或不可重试，返回RetryOutcome，保留最后一次异常、调用次数及耗时
+ * backoffError/backoffNull/backoffFalse及其异步方式是常用策略的简化形式，只返回值
+ * backoffXxx在调用线程中重试，重试间隔内调用线程休眠
+ * backoffXxxAsync返回CompletableFuture，首次调用在调用线程中执行，重试由ScheduledExecutorService延迟调度并在其线程中执行，
+ * 重试间隔内不占用任何线程，超时时间及重试次数的语义与同步方式相同
+ * 每次重试的等待时间由BackoffStrategy计算，默认为BackoffJitter.BINARY_EXPONENTIAL
+ * 配置RetryGuard时，每次调用前经过熔断器，每次重试前申请重试预算，熔断时直接返回失败结果，预算不足时放弃重试
  *
  * @author PeKnight
  *
@@ -42,104 +53,362 @@ import java.util.concurrent.TimeUnit;
 public class BinaryExponentialBackoff {
     private static final Logger LOGGER = LoggerFactory.getLogger(BinaryExponentialBackoff.class);
 
-    private final Random random = new Random(System.currentTimeMillis());
-
     private final long requestTimeoutInMillis;
 
     private final long beBackoffSlotInMillis;
 
     private final int maximumRetryCount;
 
+    private final BackoffStrategy backoffStrategy;
+
+    /** 异步重试的调度器，为null时使用共享的默认调度器 */
+    private final ScheduledExecutorService scheduler;
+
+    /** 按操作名共享的熔断器及重试预算，为null时只在单次调用内重试 */
+    private final RetryGuard retryGuard;
+
     public BinaryExponentialBackoff() {
-        this.requestTimeoutInMillis = TimeUnit.SECONDS.toMillis(20);
-        this.beBackoffSlotInMillis = 100;
-        this.maximumRetryCount = 20;
+        this(TimeUnit.SECONDS.toMillis(20), 100, 20);
     }
 
     public BinaryExponentialBackoff(long requestTimeoutInMillis, long beBackoffSlotInMillis, int maximumRetryCount) {
+        this(requestTimeoutInMillis, beBackoffSlotInMillis, maximumRetryCount, BackoffJitter.BINARY_EXPONENTIAL, null);
+    }
+
+    /**
+     * @param scheduler 异步重试的调度器，被重试的方法会在其线程中执行，为null时使用共享的默认调度器
+     */
+    public BinaryExponentialBackoff(long requestTimeoutInMillis, long beBackoffSlotInMillis, int maximumRetryCount,
+                                    ScheduledExecutorService scheduler) {
+        this(requestTimeoutInMillis, beBackoffSlotInMillis, maximumRetryCount, BackoffJitter.BINARY_EXPONENTIAL,
+                scheduler);
+    }
+
+    /**
+     * @param backoffStrategy 退避策略，如BackoffJitter中的完全抖动、等值抖动、去相关抖动等
+     */
+    public BinaryExponentialBackoff(long requestTimeoutInMillis, long beBackoffSlotInMillis, int maximumRetryCount,
+                                    BackoffStrategy backoffStrategy) {
+        this(requestTimeoutInMillis, beBackoffSlotInMillis, maximumRetryCount, backoffStrategy, null);
+    }
+
+    /**
+     * @param backoffStrategy 退避策略
+     * @param scheduler 异步重试的调度器，被重试的方法会在其线程中执行，为null时使用共享的默认调度器
+     */
+    public BinaryExponentialBackoff(long requestTimeoutInMillis, long beBackoffSlotInMillis, int maximumRetryCount,
+                                    BackoffStrategy backoffStrategy, ScheduledExecutorService scheduler) {
+        this(requestTimeoutInMillis, beBackoffSlotInMillis, maximumRetryCount, backoffStrategy, scheduler, null);
+    }
+
+    /**
+     * @param backoffStrategy 退避策略
+     * @param scheduler 异步重试的调度器，为null时使用共享的默认调度器
+     * @param retryGuard 操作的熔断器及重试预算，通过RetryGuard.of(operation)获取，为null时不熔断、不限制重试预算
+     */
+    public BinaryExponentialBackoff(long requestTimeoutInMillis, long beBackoffSlotInMillis, int maximumRetryCount,
+                                    BackoffStrategy backoffStrategy, ScheduledExecutorService scheduler,
+                                    RetryGuard retryGuard) {
         this.requestTimeoutInMillis = requestTimeoutInMillis;
         this.beBackoffSlotInMillis = beBackoffSlotInMillis;
         this.maximumRetryCount = maximumRetryCount;
+        this.backoffStrategy = backoffStrategy;
+        this.scheduler = scheduler;
+        this.retryGuard = retryGuard;
     }
 
-    public <T, R> R backoffError(ErrorFunction<T, R> function, T param, Class<? extends Exception> eClass) {
-        RetryParam retryParam = new RetryParam(requestTimeoutInMillis);
+    /**
+     * 按重试策略调用并重试，返回包含返回值、最后一次异常、调用次数及总耗时的结果，异常不会抛出
+     */
+    public <T, R> RetryOutcome<R> backoff(ErrorFunction<T, R> function, T param, RetryPolicy<? super R> retryPolicy) {
+        RetryParam<R> retryParam = new RetryParam<>(requestTimeoutInMillis);
         while (true) {
-            try {
-                return function.apply(param);
-            } catch (Throwable t) {
-                if (t.getClass().equals(eClass)) {
-                    if (sleep(retryParam)) {
+            long permit = tryAttempt();
+            if (permit == CircuitBreaker.REJECTED) {
+                return retryParam.outcome(RetryOutcome.Status.REJECTED);
+            }
+            RetryDecision decision = attempt(function, param, retryPolicy, retryParam, permit);
+            switch (decision.getType()) {
+                case SUCCESS:
+                    return retryParam.outcome(RetryOutcome.Status.SUCCESS);
+                case RETRY:
+                    if (sleep(retryParam, decision)) {
                         continue;
-                    } else {
-                        LOGGER.warn("Error: {}", t.toString(), t);
-                        return null;
                     }
-                } else {
-                    LOGGER.warn("Unexpected Error {}", t.toString(), t);
-                    return null;
-                }
+                    return retryParam.outcome(RetryOutcome.Status.GIVE_UP);
+                default:
+                    return retryParam.outcome(RetryOutcome.Status.FATAL);
             }
         }
     }
 
+    /**
+     * backoff的异步方式，首次调用在调用线程中执行，重试在调度器线程中执行，重试策略抛出异常时future异常完成
+     */
+    public <T, R> CompletableFuture<RetryOutcome<R>> backoffAsync(ErrorFunction<T, R> function, T param,
+                                                                  RetryPolicy<? super R> retryPolicy) {
+        CompletableFuture<RetryOutcome<R>> future = new CompletableFuture<>();
+        RetryParam<R> retryParam = new RetryParam<>(requestTimeoutInMillis);
+        new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    long permit = tryAttempt();
+                    if (permit == CircuitBreaker.REJECTED) {
+                        future.complete(retryParam.outcome(RetryOutcome.Status.REJECTED));
+                        return;
+                    }
+                    RetryDecision decision = attempt(function, param, retryPolicy, retryParam, permit);
+                    switch (decision.getType()) {
+                        case SUCCESS:
+                            future.complete(retryParam.outcome(RetryOutcome.Status.SUCCESS));
+                            break;
+                        case RETRY:
+                            // 调用期间future可能已被取消，不再调度重试
+                            if (future.isDone()) {
+                                return;
+                            }
+                            if (!schedule(retryParam, decision, this)) {
+                                future.complete(retryParam.outcome(RetryOutcome.Status.GIVE_UP));
+                            }
+                            break;
+                        default:
+                            future.complete(retryParam.outcome(RetryOutcome.Status.FATAL));
+                    }
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }
+        }.run();
+        return future;
+    }
+
+    /**
+     * 抛出eClass（含子类）时重试，抛出其他异常或放弃重试时打印异常并返回null
+     */
+    public <T, R> R backoffError(ErrorFunction<T, R> function, T param, Class<? extends Exception> eClass) {
+        return valueOrLog(backoff(function, param, RetryPolicy.retryOn(eClass)));
+    }
+
+    /**
+     * 返回null时重试，抛出的异常直接抛出
+     */
     public <T, R> R backoffNull(Function<T, R> function, T param) {
-        RetryParam retryParam = new RetryParam(requestTimeoutInMillis);
-        R returnValue;
-        while (true) {
+        return valueOrThrow(backoff(function::apply, param, RetryPolicy.retryOnNull()));
+    }
+
+    /**
+     * 返回false时重试，抛出的异常直接抛出
+     */
+    public <T> boolean backoffFalse(BoolFunction<T> function, T param) {
+        return Boolean.TRUE.equals(valueOrThrow(backoff(function::apply, param, RetryPolicy.retryOnFalse())));
+    }
+
+    public <T, R> CompletableFuture<R> backoffErrorAsync(ErrorFunction<T, R> function, T param,
+                                                         Class<? extends Exception> eClass) {
+        CompletableFuture<RetryOutcome<R>> source = backoffAsync(function, param, RetryPolicy.<R>retryOn(eClass));
+        return forwardCancellation(source, source.thenApply(BinaryExponentialBackoff::valueOrLog));
+    }
+
+    public <T, R> CompletableFuture<R> backoffNullAsync(Function<T, R> function, T param) {
+        CompletableFuture<RetryOutcome<R>> source = backoffAsync(function::apply, param, RetryPolicy.<R>retryOnNull());
+        return forwardCancellation(source, source.thenApply(BinaryExponentialBackoff::valueOrThrow));
+    }
+
+    public <T> CompletableFuture<Boolean> backoffFalseAsync(BoolFunction<T> function, T param) {
+        CompletableFuture<RetryOutcome<Boolean>> source = backoffAsync(function::apply, param,
+                RetryPolicy.retryOnFalse());
+        return forwardCancellation(source, source.thenApply(outcome -> Boolean.TRUE.equals(valueOrThrow(outcome))));
+    }
+
+    /**
+     * 取消派生的future时同时取消源future，使已调度的重试不再执行
+     */
+    private static <R> CompletableFuture<R> forwardCancellation(CompletableFuture<?> source,
+                                                                CompletableFuture<R> derived) {
+        derived.whenComplete((r, t) -> {
+            if (derived.isCancelled()) {
+                source.cancel(false);
+            }
+        });
+        return derived;
+    }
+
+    /**
+     * 执行一次调用并分类，同时记录到RetryGuard：成功记为成功，可重试的失败记为失败，
+     * 不可重试的结果（如参数错误）不代表下游故障，不影响熔断器
+     *
+     * @param permit 熔断器放行本次调用的许可编号，半开时只有试探调用的结果才会改变熔断器状态
+     */
+    private <T, R> RetryDecision attempt(ErrorFunction<T, R> function, T param, RetryPolicy<? super R> retryPolicy,
+                                         RetryParam<R> retryParam, long permit) {
+        R returnValue = null;
+        Throwable error = null;
+        try {
             returnValue = function.apply(param);
-            if (returnValue == null) {
-                if (sleep(retryParam)) {
-                    continue;
-                } else {
-                    return null;
-                }
+        } catch (Throwable t) {
+            error = t;
+        }
+        retryParam.attempted(returnValue, error);
+        RetryDecision decision = retryPolicy.classify(returnValue, error);
+        if (decision.getType() == RetryDecision.Type.SUCCESS) {
+            recordSuccess(permit);
+        } else if (decision.getType() == RetryDecision.Type.RETRY) {
+            recordFailure(permit);
+        }
+        return decision;
+    }
+
+    private static <R> R valueOrLog(RetryOutcome<R> outcome) {
+        Throwable error = outcome.getLastError();
+        if (error != null && !outcome.isSuccess()) {
+            if (outcome.getStatus() == RetryOutcome.Status.FATAL) {
+                LOGGER.warn("Unexpected Error {}", error.toString(), error);
             } else {
-                return returnValue;
+                LOGGER.warn("Error: {}", error.toString(), error);
             }
         }
+        return outcome.getValue();
     }
 
-    public <T> boolean backoffFalse(BoolFunction<T> function, T param) {
-        RetryParam retryParam = new RetryParam(requestTimeoutInMillis);
-        while (true) {
-            if (function.apply(param)) {
-                return true;
-            } else {
-                if (sleep(retryParam)) {
-                    continue;
-                } else {
-                    return false;
-                }
+    /**
+     * 不可重试的异常原样抛出，function不声明受检异常，因此只会是RuntimeException或Error
+     */
+    private static <R> R valueOrThrow(RetryOutcome<R> outcome) {
+        Throwable error = outcome.getLastError();
+        if (error != null && outcome.getStatus() == RetryOutcome.Status.FATAL) {
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
             }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw new UndeclaredThrowableException(error);
         }
+        return outcome.getValue();
     }
 
-    private boolean sleep(RetryParam retryParam) {
-        retryParam.retryCountIncrement();
+    private boolean sleep(RetryParam<?> retryParam, RetryDecision decision) {
+        long sleepTimeInMillis = nextSleepTime(retryParam, decision);
+        if (sleepTimeInMillis < 0) {
+            return false;
+        }
         try {
-            if (retryParam.getRemainTimeInMillis() > 0) {
-                long sleepTimeInMillis = ((long) (random.nextDouble() *
-                        (1L << Math.min(retryParam.getRetryCount(), maximumRetryCount)))) * beBackoffSlotInMillis;
-                sleepTimeInMillis = Math.min(sleepTimeInMillis, retryParam.getRemainTimeInMillis());
-                TimeUnit.MILLISECONDS.sleep(sleepTimeInMillis);
-                retryParam.remainTimeDecrement(sleepTimeInMillis);
-                return true;
-            } else {
-                LOGGER.warn("Task has been rejected " + retryParam.getRetryCount() + " times till timeout");
-                return false;
-            }
+            TimeUnit.MILLISECONDS.sleep(sleepTimeInMillis);
+            retryParam.remainTimeDecrement(sleepTimeInMillis);
+            return true;
         } catch (InterruptedException e) {
             LOGGER.warn("Interrupted while waiting to place client on executor queue.");
             Thread.currentThread().interrupt();
+            giveUp();
             return false;
         }
     }
 
-    private class RetryParam {
+    /**
+     * 延迟调度下一次重试，超时或调度器拒绝时返回false
+     */
+    private boolean schedule(RetryParam<?> retryParam, RetryDecision decision, Runnable retry) {
+        long sleepTimeInMillis = nextSleepTime(retryParam, decision);
+        if (sleepTimeInMillis < 0) {
+            return false;
+        }
+        try {
+            (scheduler == null ? SchedulerHolder.SCHEDULER : scheduler)
+                    .schedule(retry, sleepTimeInMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Retry has been rejected by scheduler: {}", e.toString());
+            giveUp();
+            return false;
+        }
+        retryParam.remainTimeDecrement(sleepTimeInMillis);
+        return true;
+    }
+
+    /**
+     * 计算下一次重试前的等待时间，重试策略给出建议等待时间时优先使用，已超时或重试预算不足时返回-1
+     */
+    private long nextSleepTime(RetryParam<?> retryParam, RetryDecision decision) {
+        retryParam.retryCountIncrement();
+        if (retryParam.getRemainTimeInMillis() > 0) {
+            if (retryGuard != null && !retryGuard.tryRetry()) {
+                LOGGER.warn("Retry budget of [{}] has been exhausted", retryGuard.getOperation());
+                giveUp();
+                return -1;
+            }
+            long sleepTimeInMillis = decision.getRetryAfterInMillis() >= 0 ? decision.getRetryAfterInMillis()
+                    : backoffStrategy.nextDelay(retryParam.getRetryCount(), retryParam.getPreviousSleepTimeInMillis(),
+                    beBackoffSlotInMillis, maximumRetryCount);
+            sleepTimeInMillis = Math.min(Math.max(sleepTimeInMillis, 0), retryParam.getRemainTimeInMillis());
+            retryParam.setPreviousSleepTimeInMillis(sleepTimeInMillis);
+            return sleepTimeInMillis;
+        } else {
+            LOGGER.warn("Task has been rejected " + retryParam.getRetryCount() + " times till timeout");
+            giveUp();
+            return -1;
+        }
+    }
+
+    /**
+     * 熔断时返回CircuitBreaker.REJECTED，否则返回熔断器放行的许可编号
+     */
+    private long tryAttempt() {
+        if (retryGuard == null) {
+            return CircuitBreaker.NORMAL_PERMIT;
+        }
+        long permit = retryGuard.tryAttempt();
+        if (permit == CircuitBreaker.REJECTED) {
+            LOGGER.debug("Circuit breaker of [{}] is open", retryGuard.getOperation());
+        }
+        return permit;
+    }
+
+    private void recordSuccess(long permit) {
+        if (retryGuard != null) {
+            retryGuard.recordSuccess(permit);
+        }
+    }
+
+    private void recordFailure(long permit) {
+        if (retryGuard != null) {
+            retryGuard.recordFailure(permit);
+        }
+    }
+
+    private void giveUp() {
+        if (retryGuard != null) {
+            retryGuard.giveUp();
+        }
+    }
+
+    /**
+     * 共享的默认异步重试调度器，首次使用时创建
+     */
+    private static class SchedulerHolder {
+        private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+        private static ScheduledExecutorService createScheduler() {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("BackoffScheduler");
+            threadFactory.setDaemon(true);
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                    Runtime.getRuntime().availableProcessors(), threadFactory);
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+
+    private class RetryParam<R> {
 
         private int retryCount = 0;
         private long remainTimeInMillis = 0;
+        private long previousSleepTimeInMillis = 0;
+        private final long startTime = System.nanoTime();
+        private int attempts = 0;
+        private R lastValue;
+        private Throwable lastError;
 
         public RetryParam(long remainTimeInMillis) {
             this.remainTimeInMillis = remainTimeInMillis;
@@ -153,6 +422,14 @@ public class BinaryExponentialBackoff {
             return remainTimeInMillis;
         }
 
+        public long getPreviousSleepTimeInMillis() {
+            return previousSleepTimeInMillis;
+        }
+
+        public void setPreviousSleepTimeInMillis(long previousSleepTimeInMillis) {
+            this.previousSleepTimeInMillis = previousSleepTimeInMillis;
+        }
+
         public void retryCountIncrement() {
             retryCount++;
         }
@@ -160,5 +437,16 @@ public class BinaryExponentialBackoff {
         public void remainTimeDecrement(long sleepTimeInMillis) {
             remainTimeInMillis -= sleepTimeInMillis;
         }
+
+        public void attempted(R value, Throwable error) {
+            attempts++;
+            lastValue = value;
+            lastError = error;
+        }
+
+        public RetryOutcome<R> outcome(RetryOutcome.Status status) {
+            return new RetryOutcome<>(status, lastValue, lastError, attempts,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
     }
 }
@@ -0,0 +1,213 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 熔断器
+ * CLOSED：正常放行，连续失败达到failureThreshold次后转为OPEN
+ * OPEN：拒绝所有调用，openTimeout后第一个调用转为HALF_OPEN并放行
+ * HALF_OPEN：只放行这一个试探调用，成功转为CLOSED，失败转为OPEN；
+ * 试探调用超过openTimeout仍未返回结果时再放行一个，避免结果丢失导致一直半开
+ * OPEN时记录的成功结果来自熔断前放行的调用，忽略，不会关闭熔断器
+ * acquirePermit放行的调用带有许可编号，HALF_OPEN时只有当前试探调用的结果（许可编号相同）才能关闭或重新打开熔断器，
+ * 熔断前放行、迟到的调用结果不影响半开状态
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /** acquirePermit拒绝调用时的返回值 */
+    public static final long REJECTED = -1L;
+
+    /** CLOSED状态下放行的普通调用的许可编号 */
+    public static final long NORMAL_PERMIT = 0L;
+
+    private final int failureThreshold;
+
+    private final long openTimeoutInNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+    /** 进入当前状态或最近一次放行试探调用的时间 */
+    private final AtomicLong stateTime = new AtomicLong(System.nanoTime());
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /** 试探调用的许可编号，从1开始递增 */
+    private final AtomicLong probeSequence = new AtomicLong();
+
+    /** 最近一次放行的试探调用的许可编号 */
+    private volatile long probe = NORMAL_PERMIT;
+
+    private final LongAdder openCount = new LongAdder();
+
+    private final LongAdder halfOpenCount = new LongAdder();
+
+    private final LongAdder closeCount = new LongAdder();
+
+    /**
+     * 默认连续失败5次熔断，熔断5秒后试探
+     */
+    public CircuitBreaker() {
+        this(5, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param failureThreshold 连续失败多少次后熔断
+     * @param openTimeout 熔断多久后放行试探调用
+     * @param unit openTimeout的时间单位
+     */
+    public CircuitBreaker(int failureThreshold, long openTimeout, TimeUnit unit) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openTimeoutInNanos = unit.toNanos(openTimeout);
+    }
+
+    /**
+     * 申请放行本次调用，拒绝时返回REJECTED，CLOSED时返回NORMAL_PERMIT，放行试探调用时返回其许可编号，
+     * 放行后须以返回的许可编号调用recordSuccess或recordFailure
+     */
+    public long acquirePermit() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return NORMAL_PERMIT;
+        }
+        long now = System.nanoTime();
+        long time = stateTime.get();
+        // 先更新时间再改状态，同一时刻只有一个线程能放行试探调用
+        if (now - time < openTimeoutInNanos || !stateTime.compareAndSet(time, now)) {
+            return REJECTED;
+        }
+        // 先记录许可编号再转为HALF_OPEN，看到HALF_OPEN的线程都能看到当前试探调用的编号
+        long permit = probeSequence.incrementAndGet();
+        probe = permit;
+        if (current == State.OPEN && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            halfOpenCount.increment();
+        }
+        return permit;
+    }
+
+    /**
+     * 是否放行本次调用，放行后须调用recordSuccess或recordFailure
+     * 无法区分试探调用与迟到的调用结果，需要区分时使用acquirePermit
+     */
+    public boolean allowRequest() {
+        return acquirePermit() != REJECTED;
+    }
+
+    /**
+     * 记录成功，HALF_OPEN时视为当前试探调用的结果
+     */
+    public void recordSuccess() {
+        recordSuccess(probe);
+    }
+
+    /**
+     * 记录成功，HALF_OPEN时只有当前试探调用的成功才会关闭熔断器
+     *
+     * @param permit acquirePermit返回的许可编号
+     */
+    public void recordSuccess(long permit) {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            // 没有失败时不写入，避免每次成功调用都修改共享变量
+            if (consecutiveFailures.get() != 0) {
+                consecutiveFailures.set(0);
+            }
+        } else if (current == State.HALF_OPEN && permit == probe
+                && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            consecutiveFailures.set(0);
+            stateTime.set(System.nanoTime());
+            closeCount.increment();
+        }
+    }
+
+    /**
+     * 记录失败，HALF_OPEN时视为当前试探调用的结果
+     */
+    public void recordFailure() {
+        recordFailure(probe);
+    }
+
+    /**
+     * 记录失败，HALF_OPEN时只有当前试探调用的失败才会重新打开熔断器
+     *
+     * @param permit acquirePermit返回的许可编号
+     */
+    public void recordFailure(long permit) {
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            if (permit == probe && state.compareAndSet(State.HALF_OPEN, State.OPEN)) {
+                open();
+            }
+        } else if (current == State.CLOSED && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            if (state.compareAndSet(State.CLOSED, State.OPEN)) {
+                open();
+            }
+        }
+    }
+
+    private void open() {
+        stateTime.set(System.nanoTime());
+        consecutiveFailures.set(0);
+        openCount.increment();
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /** 转为OPEN的次数 */
+    public long getOpenCount() {
+        return openCount.sum();
+    }
+
+    /** 转为HALF_OPEN的次数 */
+    public long getHalfOpenCount() {
+        return halfOpenCount.sum();
+    }
+
+    /** 由HALF_OPEN恢复为CLOSED的次数 */
+    public long getCloseCount() {
+        return closeCount.sum();
+    }
+}
@@ -61,21 +61,32 @@ public final class ExecutorUtils {
         }
     }
 
+    /**
+     * 返回InstrumentedThreadPoolExecutor，执行统计注册到MetricsRegistry，名称自动编号
+     */
     public static ExecutorService createExecutorService(int corePoolSize, int maximumPoolSize, long keepAliveTime,
                                                         int queueCapacity) {
-        return new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTime, TimeUnit.MILLISECONDS,
-                createQueue(queueCapacity), new CustomizableThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        return new InstrumentedThreadPoolExecutor(null, corePoolSize, maximumPoolSize, keepAliveTime,
+                TimeUnit.MILLISECONDS, createQueue(queueCapacity), new CustomizableThreadFactory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
+    /**
+     * 返回InstrumentedThreadPoolExecutor，执行统计以poolName注册到MetricsRegistry
+     */
     public static ExecutorService createExecutorService(String poolName, int corePoolSize, int maximumPoolSize,
                                                         long keepAliveTime, int queueCapacity) {
-        return new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTime, TimeUnit.MILLISECONDS,
-                createQueue(queueCapacity), new CustomizableThreadFactory(poolName), new ThreadPoolExecutor.CallerRunsPolicy());
+        return new InstrumentedThreadPoolExecutor(poolName, corePoolSize, maximumPoolSize, keepAliveTime,
+                TimeUnit.MILLISECONDS, createQueue(queueCapacity), new CustomizableThreadFactory(poolName),
+                new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
+    /**
+     * 返回InstrumentedTaskExecutor，初始化后执行统计注册到MetricsRegistry，名称自动编号
+     */
     public static TaskExecutor createTaskExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime,
                                                   int queueCapacity) {
-        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        ThreadPoolTaskExecutor taskExecutor = new InstrumentedTaskExecutor(null);
         taskExecutor.setCorePoolSize(corePoolSize);
         taskExecutor.setMaxPoolSize(maximumPoolSize);
         taskExecutor.setKeepAliveSeconds((int) (keepAliveTime / 1000));
@@ -85,9 +96,12 @@ public final class ExecutorUtils {
         return taskExecutor;
     }
 
+    /**
+     * 返回InstrumentedTaskExecutor，初始化后执行统计以poolName注册到MetricsRegistry
+     */
     public static TaskExecutor createTaskExecutor(String poolName, int corePoolSize, int maximumPoolSize,
                                                   long keepAliveTime, int queueCapacity) {
-        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        ThreadPoolTaskExecutor taskExecutor = new InstrumentedTaskExecutor(poolName);
         taskExecutor.setCorePoolSize(corePoolSize);
         taskExecutor.setMaxPoolSize(maximumPoolSize);
         taskExecutor.setKeepAliveSeconds((int) (keepAliveTime / 1000));
@@ -0,0 +1,305 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮定时器，适用于大量、精度要求不高的超时任务（如请求超时）
+ * 时间轮由ticksPerWheel个桶组成，后台线程每tickDuration前进一格并执行当前桶中到期的任务，
+ * 添加、取消任务均为O(1)：添加时放入无锁队列，由后台线程在下一次前进时放入对应的桶，取消时只标记状态，由后台线程移除
+ * 任务在后台线程中执行，应尽量简短
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class HashedWheelTimer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private static final long STOP_TIMEOUT_IN_MILLIS = 5000;
+
+    /** 每次前进最多从队列转移到时间轮的任务数，避免新任务过多时延误到期任务的执行 */
+    private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+    private final long tickDurationInNanos;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final long startTime;
+
+    private final Thread worker;
+
+    private volatile boolean running = false;
+
+    /** 已停止的定时器不能再添加任务 */
+    private volatile boolean stopped = false;
+
+    /**
+     * 默认每100毫秒前进一格，一轮512格
+     */
+    public HashedWheelTimer() {
+        this(100, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * @param tickDuration 每格的时间
+     * @param ticksPerWheel 一轮的格数，会向上取整为2的幂
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("tickDuration and ticksPerWheel must be positive");
+        }
+        this.tickDurationInNanos = unit.toNanos(tickDuration);
+        int length = ticksPerWheel == 1 ? 1 : Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.wheel = new Bucket[length];
+        for (int i = 0; i < length; i++) {
+            this.wheel[i] = new Bucket();
+        }
+        this.mask = length - 1;
+        this.startTime = System.nanoTime();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("HashedWheelTimer");
+        threadFactory.setDaemon(true);
+        this.worker = threadFactory.newThread(this::work);
+    }
+
+    /**
+     * 添加超时任务，首次添加时启动后台线程
+     *
+     * @param delay 延迟时间，实际执行时间误差在一格以内
+     * @throws IllegalStateException 定时器已停止
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (!running) {
+            start();
+        }
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+        pendingTimeouts.offer(timeout);
+        // 与stop()并发时任务可能已加入队列但不会再被执行，取消后抛出异常
+        if (stopped && timeout.cancel()) {
+            throw new IllegalStateException("HashedWheelTimer has been stopped");
+        }
+        return timeout;
+    }
+
+    private synchronized void start() {
+        if (stopped) {
+            throw new IllegalStateException("HashedWheelTimer has been stopped");
+        }
+        if (!running && worker.getState() == Thread.State.NEW) {
+            running = true;
+            worker.start();
+        }
+    }
+
+    /**
+     * 停止后台线程，未到期的任务不再执行，停止后添加任务时抛出IllegalStateException
+     */
+    public synchronized void stop() {
+        stopped = true;
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(STOP_TIMEOUT_IN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pendingTimeouts.clear();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void work() {
+        long tick = 0;
+        while (running) {
+            long deadline = tickDurationInNanos * (tick + 1);
+            long sleepTime;
+            while (running && (sleepTime = deadline - (System.nanoTime() - startTime)) > 0) {
+                LockSupport.parkNanos(this, sleepTime);
+            }
+            if (!running) {
+                return;
+            }
+            transferPendingTimeouts(tick);
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private void transferPendingTimeouts(long tick) {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != Timeout.ST_INIT) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickDurationInNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的任务放入当前格立即执行
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * 超时任务句柄
+     */
+    public static final class Timeout {
+
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private volatile Runnable task;
+
+        /** 相对于定时器启动时间的到期时间（纳秒） */
+        private final long deadline;
+
+        private volatile int state = ST_INIT;
+
+        /** 以下字段只由后台线程访问 */
+        private long remainingRounds;
+
+        private Timeout previous;
+
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消任务，任务已执行或已取消时返回false
+         */
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            // 释放任务引用，节点由后台线程在经过其所在的桶时移除
+            task = null;
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            Runnable runnable = task;
+            task = null;
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                LOGGER.warn("Timeout task threw an exception: {}", t.toString(), t);
+            }
+        }
+    }
+
+    /**
+     * 时间轮的一格，任务的双向链表，只由后台线程访问
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            if (head == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+            }
+            tail = timeout;
+        }
+
+        /**
+         * 执行到期的任务并移除，移除已取消的任务，其余任务剩余轮数减一
+         */
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.state != Timeout.ST_INIT) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.previous != null) {
+                timeout.previous.next = next;
+            }
+            if (next != null) {
+                next.previous = timeout.previous;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 带执行统计的ThreadPoolTaskExecutor，通过TaskDecorator统计排队时间及执行时间，
+ * 初始化（initialize或作为Spring Bean时的afterPropertiesSet）后将统计注册到MetricsRegistry，shutdown后注销
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class InstrumentedTaskExecutor extends ThreadPoolTaskExecutor {
+
+    private static final long serialVersionUID = -3197580924518327346L;
+
+    private final ThreadPoolStatistics statistics;
+
+    /**
+     * @param poolName 线程池名称，用作统计名称，为null时自动编号
+     */
+    public InstrumentedTaskExecutor(String poolName) {
+        this.statistics = new ThreadPoolStatistics(poolName);
+        super.setTaskDecorator(statistics);
+    }
+
+    /**
+     * 给定的TaskDecorator先于统计执行，排队时间及执行时间不含装饰的开销
+     */
+    @Override
+    public void setTaskDecorator(TaskDecorator taskDecorator) {
+        super.setTaskDecorator(taskDecorator == null ? statistics
+                : runnable -> statistics.decorate(taskDecorator.decorate(runnable)));
+    }
+
+    @Override
+    protected ExecutorService initializeExecutor(ThreadFactory threadFactory,
+                                                 RejectedExecutionHandler rejectedExecutionHandler) {
+        ExecutorService executor = super.initializeExecutor(threadFactory,
+                statistics.rejectedExecutionHandler(rejectedExecutionHandler));
+        statistics.bind(getThreadPoolExecutor());
+        return executor;
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        statistics.unbind();
+    }
+
+    public ThreadPoolStatistics getStatistics() {
+        return statistics;
+    }
+}
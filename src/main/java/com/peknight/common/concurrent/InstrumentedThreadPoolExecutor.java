@@ -0,0 +1,96 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带执行统计的线程池，创建时将统计注册到MetricsRegistry（同时暴露给JMX），线程池终止后注销
+ * 统计排队时间、执行时间、线程数、队列长度、被拒绝次数及每秒任务数，见ThreadPoolStatistics
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final ThreadPoolStatistics statistics;
+
+    /**
+     * @param poolName 线程池名称，用作统计名称，为null时自动编号
+     */
+    public InstrumentedThreadPoolExecutor(String poolName, int corePoolSize, int maximumPoolSize, long keepAliveTime,
+                                          TimeUnit unit, BlockingQueue<Runnable> workQueue,
+                                          ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        this(new ThreadPoolStatistics(poolName), corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue,
+                threadFactory, handler);
+    }
+
+    private InstrumentedThreadPoolExecutor(ThreadPoolStatistics statistics, int corePoolSize, int maximumPoolSize,
+                                           long keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue,
+                                           ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory,
+                statistics.rejectedExecutionHandler(handler));
+        this.statistics = statistics;
+        statistics.bind(this);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(statistics.decorate(command));
+    }
+
+    /**
+     * 返回的任务为提交时的原任务
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        List<Runnable> originalTasks = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            originalTasks.add(task instanceof ThreadPoolStatistics.TimedTask
+                    ? ((ThreadPoolStatistics.TimedTask) task).getTask() : task);
+        }
+        return originalTasks;
+    }
+
+    @Override
+    protected void terminated() {
+        super.terminated();
+        statistics.unbind();
+    }
+
+    public ThreadPoolStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+import com.peknight.common.metrics.SlidingWindowCounter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重试预算，限制滑动窗口内的重试次数不超过成功调用次数的一定比例
+ * 依赖方故障时成功调用减少，可重试的次数随之减少，避免大量调用方同时重试放大依赖方的负载
+ * 可在多个操作（RetryGuard）之间共享
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class RetryBudget {
+
+    /** 允许的重试次数与成功调用次数之比 */
+    private final double retryRatio;
+
+    /** 窗口内无论成功次数多少都允许的重试次数，使调用量很小时仍可重试 */
+    private final long minRetries;
+
+    private final SlidingWindowCounter successes;
+
+    private final SlidingWindowCounter retries;
+
+    /**
+     * 默认窗口为10秒，重试次数不超过成功次数的10%，窗口内至少允许10次重试
+     */
+    public RetryBudget() {
+        this(0.1, 10, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param retryRatio 重试次数与成功调用次数之比的上限
+     * @param minRetries 窗口内至少允许的重试次数
+     * @param windowSize 窗口大小
+     * @param unit 窗口大小的时间单位
+     */
+    public RetryBudget(double retryRatio, long minRetries, long windowSize, TimeUnit unit) {
+        if (retryRatio < 0 || minRetries < 0) {
+            throw new IllegalArgumentException("retryRatio and minRetries must not be negative");
+        }
+        this.retryRatio = retryRatio;
+        this.minRetries = minRetries;
+        this.successes = new SlidingWindowCounter(windowSize, unit, 10);
+        this.retries = new SlidingWindowCounter(windowSize, unit, 10);
+    }
+
+    public void recordSuccess() {
+        successes.increment();
+    }
+
+    /**
+     * 申请一次重试，预算不足时返回false
+     * 判断与计数之间不加锁，并发时可能略微超出预算
+     */
+    public boolean tryAcquire() {
+        if (retries.sumWithCurrent() >= minRetries + (long) (successes.sumWithCurrent() * retryRatio)) {
+            return false;
+        }
+        retries.increment();
+        return true;
+    }
+
+    public double getRetryRatio() {
+        return retryRatio;
+    }
+
+    public long getMinRetries() {
+        return minRetries;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重试策略对一次调用结果的分类
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public final class RetryDecision {
+
+    public enum Type {
+        /** 调用成功，返回结果 */
+        SUCCESS,
+        /** 可重试的失败 */
+        RETRY,
+        /** 不可重试的失败，立即返回 */
+        FATAL
+    }
+
+    private static final RetryDecision SUCCESS = new RetryDecision(Type.SUCCESS, -1);
+    private static final RetryDecision RETRY = new RetryDecision(Type.RETRY, -1);
+    private static final RetryDecision FATAL = new RetryDecision(Type.FATAL, -1);
+
+    private final Type type;
+
+    /** 依赖方建议的重试等待时间，小于0时按退避策略计算 */
+    private final long retryAfterInMillis;
+
+    private RetryDecision(Type type, long retryAfterInMillis) {
+        this.type = type;
+        this.retryAfterInMillis = retryAfterInMillis;
+    }
+
+    public static RetryDecision success() {
+        return SUCCESS;
+    }
+
+    public static RetryDecision retry() {
+        return RETRY;
+    }
+
+    /**
+     * 可重试，并按依赖方建议的时间（如HTTP Retry-After）等待后重试，仍受总超时时间限制
+     */
+    public static RetryDecision retryAfter(long delay, TimeUnit unit) {
+        return new RetryDecision(Type.RETRY, Math.max(unit.toMillis(delay), 0));
+    }
+
+    public static RetryDecision fatal() {
+        return FATAL;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getRetryAfterInMillis() {
+        return retryAfterInMillis;
+    }
+
+    @Override
+    public String toString() {
+        return retryAfterInMillis < 0 ? type.toString() : type + "(" + retryAfterInMillis + "ms)";
+    }
+}
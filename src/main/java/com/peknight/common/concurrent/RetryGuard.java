@@ -0,0 +1,217 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+import com.peknight.common.metrics.MetricsRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按操作名共享的重试保护，包含可选的熔断器与重试预算，以及该操作的调用、重试、放弃及熔断状态变化统计
+ * 同一操作名的RetryGuard全局唯一，创建时注册到MetricsRegistry，
+ * 多个BinaryExponentialBackoff使用同一RetryGuard时，依赖方故障后所有调用方都会快速失败，而不是各自重试到超时
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class RetryGuard implements RetryGuardMXBean {
+
+    private static final String MBEAN_DOMAIN = "com.peknight.common.concurrent";
+    private static final String MBEAN_TYPE = "Retry";
+
+    private static final ConcurrentMap<String, RetryGuard> GUARDS = new ConcurrentHashMap<>();
+
+    private final String operation;
+
+    /** 为null时不熔断 */
+    private final CircuitBreaker circuitBreaker;
+
+    /** 为null时不限制重试次数 */
+    private final RetryBudget retryBudget;
+
+    private final LongAdder attemptCount = new LongAdder();
+
+    private final LongAdder successCount = new LongAdder();
+
+    private final LongAdder failureCount = new LongAdder();
+
+    private final LongAdder retryCount = new LongAdder();
+
+    private final LongAdder giveUpCount = new LongAdder();
+
+    private final LongAdder budgetExhaustedCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private RetryGuard(String operation, CircuitBreaker circuitBreaker, RetryBudget retryBudget) {
+        this.operation = operation;
+        this.circuitBreaker = circuitBreaker;
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * 获取操作对应的RetryGuard，不存在时使用默认配置的熔断器创建，不限制重试预算
+     */
+    public static RetryGuard of(String operation) {
+        RetryGuard guard = GUARDS.get(operation);
+        return guard != null ? guard : of(operation, new CircuitBreaker(), null);
+    }
+
+    /**
+     * 获取操作对应的RetryGuard，不存在时按给定配置创建，已存在时忽略给定配置
+     *
+     * @param circuitBreaker 熔断器，为null时不熔断
+     * @param retryBudget 重试预算，可在多个操作间共享，为null时不限制
+     */
+    public static RetryGuard of(String operation, CircuitBreaker circuitBreaker, RetryBudget retryBudget) {
+        RetryGuard guard = GUARDS.get(operation);
+        if (guard == null) {
+            RetryGuard newGuard = new RetryGuard(operation, circuitBreaker, retryBudget);
+            guard = GUARDS.putIfAbsent(operation, newGuard);
+            if (guard == null) {
+                guard = newGuard;
+                MetricsRegistry.register(MetricsRegistry.objectName(MBEAN_DOMAIN, MBEAN_TYPE, "operation", operation),
+                        guard, RetryGuardMXBean.class);
+            }
+        }
+        return guard;
+    }
+
+    /**
+     * 申请一次调用，熔断时返回CircuitBreaker.REJECTED，否则返回记录结果时使用的许可编号
+     */
+    long tryAttempt() {
+        long permit = circuitBreaker == null ? CircuitBreaker.NORMAL_PERMIT : circuitBreaker.acquirePermit();
+        if (permit == CircuitBreaker.REJECTED) {
+            rejectedCount.increment();
+            return permit;
+        }
+        attemptCount.increment();
+        return permit;
+    }
+
+    void recordSuccess(long permit) {
+        successCount.increment();
+        if (circuitBreaker != null) {
+            circuitBreaker.recordSuccess(permit);
+        }
+        if (retryBudget != null) {
+            retryBudget.recordSuccess();
+        }
+    }
+
+    void recordFailure(long permit) {
+        failureCount.increment();
+        if (circuitBreaker != null) {
+            circuitBreaker.recordFailure(permit);
+        }
+    }
+
+    /**
+     * 申请一次重试，重试预算不足时返回false
+     */
+    boolean tryRetry() {
+        if (retryBudget != null && !retryBudget.tryAcquire()) {
+            budgetExhaustedCount.increment();
+            return false;
+        }
+        retryCount.increment();
+        return true;
+    }
+
+    void giveUp() {
+        giveUpCount.increment();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public String getState() {
+        return circuitBreaker == null ? null : circuitBreaker.getState().toString();
+    }
+
+    @Override
+    public long getAttemptCount() {
+        return attemptCount.sum();
+    }
+
+    @Override
+    public long getSuccessCount() {
+        return successCount.sum();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    @Override
+    public long getGiveUpCount() {
+        return giveUpCount.sum();
+    }
+
+    @Override
+    public long getBudgetExhaustedCount() {
+        return budgetExhaustedCount.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    @Override
+    public long getOpenCount() {
+        return circuitBreaker == null ? 0 : circuitBreaker.getOpenCount();
+    }
+
+    @Override
+    public long getHalfOpenCount() {
+        return circuitBreaker == null ? 0 : circuitBreaker.getHalfOpenCount();
+    }
+
+    @Override
+    public long getCloseCount() {
+        return circuitBreaker == null ? 0 : circuitBreaker.getCloseCount();
+    }
+}
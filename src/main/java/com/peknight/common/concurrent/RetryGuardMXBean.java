@@ -0,0 +1,64 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+/**
+ * 按操作名统计的重试信息（JMX）
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public interface RetryGuardMXBean {
+
+    String getOperation();
+
+    /** 熔断器状态，未配置熔断器时为null */
+    String getState();
+
+    /** 调用次数，含重试，不含被熔断器拒绝的调用 */
+    long getAttemptCount();
+
+    long getSuccessCount();
+
+    /** 可重试的失败次数，不可重试的结果不计入 */
+    long getFailureCount();
+
+    long getRetryCount();
+
+    /** 超时、重试预算不足等原因放弃重试的次数 */
+    long getGiveUpCount();
+
+    /** 重试预算不足的次数 */
+    long getBudgetExhaustedCount();
+
+    /** 被熔断器拒绝的调用次数 */
+    long getRejectedCount();
+
+    long getOpenCount();
+
+    long getHalfOpenCount();
+
+    long getCloseCount();
+}
@@ -0,0 +1,96 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+/**
+ * 带重试的调用结果，包含返回值、最后一次异常、调用次数及总耗时
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class RetryOutcome<R> {
+
+    public enum Status {
+        SUCCESS,
+        /** 重试策略判定为不可重试 */
+        FATAL,
+        /** 超时、重试预算不足、被中断或调度器拒绝，放弃重试 */
+        GIVE_UP,
+        /** 被熔断器拒绝 */
+        REJECTED
+    }
+
+    private final Status status;
+
+    private final R value;
+
+    private final Throwable lastError;
+
+    private final int attempts;
+
+    private final long elapsedTimeInMillis;
+
+    public RetryOutcome(Status status, R value, Throwable lastError, int attempts, long elapsedTimeInMillis) {
+        this.status = status;
+        this.value = value;
+        this.lastError = lastError;
+        this.attempts = attempts;
+        this.elapsedTimeInMillis = elapsedTimeInMillis;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /** 最后一次调用的返回值，抛出异常时为null */
+    public R getValue() {
+        return value;
+    }
+
+    /** 最后一次调用抛出的异常，正常返回时为null */
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    /** 实际调用次数，含首次调用 */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /** 从首次调用到返回结果的总耗时，含重试等待时间 */
+    public long getElapsedTimeInMillis() {
+        return elapsedTimeInMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryOutcome{status=" + status + ", value=" + value + ", lastError=" + lastError
+                + ", attempts=" + attempts + ", elapsedTimeInMillis=" + elapsedTimeInMillis + "}";
+    }
+}
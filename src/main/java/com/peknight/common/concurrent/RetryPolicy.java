@@ -0,0 +1,75 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+/**
+ * 重试策略，根据调用的返回值或抛出的异常判断是否成功、是否可以重试
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+@FunctionalInterface
+public interface RetryPolicy<R> {
+
+    /**
+     * @param result 返回值，抛出异常时为null
+     * @param error 抛出的异常，正常返回时为null
+     */
+    RetryDecision classify(R result, Throwable error);
+
+    /**
+     * 抛出给定异常（含子类）时重试，抛出其他异常时不重试，正常返回即成功
+     */
+    @SafeVarargs
+    static <R> RetryPolicy<R> retryOn(Class<? extends Throwable>... errorClasses) {
+        return (result, error) -> {
+            if (error == null) {
+                return RetryDecision.success();
+            }
+            for (Class<? extends Throwable> errorClass : errorClasses) {
+                if (errorClass.isInstance(error)) {
+                    return RetryDecision.retry();
+                }
+            }
+            return RetryDecision.fatal();
+        };
+    }
+
+    /**
+     * 返回null时重试，抛出异常时不重试
+     */
+    static <R> RetryPolicy<R> retryOnNull() {
+        return (result, error) -> error != null ? RetryDecision.fatal()
+                : result == null ? RetryDecision.retry() : RetryDecision.success();
+    }
+
+    /**
+     * 返回false时重试，抛出异常时不重试
+     */
+    static RetryPolicy<Boolean> retryOnFalse() {
+        return (result, error) -> error != null ? RetryDecision.fatal()
+                : Boolean.TRUE.equals(result) ? RetryDecision.success() : RetryDecision.retry();
+    }
+}
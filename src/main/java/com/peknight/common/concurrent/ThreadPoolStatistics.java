@@ -0,0 +1,319 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+import com.peknight.common.metrics.HistogramSnapshot;
+import com.peknight.common.metrics.LatencyHistogram;
+import com.peknight.common.metrics.MetricsRegistry;
+import com.peknight.common.metrics.SlidingWindowCounter;
+import org.springframework.core.task.TaskDecorator;
+
+import javax.management.ObjectName;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程池的执行统计
+ * 任务提交时经decorate包装，记录提交时间，开始执行时记录排队时间，执行结束时记录执行时间，
+ * 拒绝策略经rejectedExecutionHandler包装后统计被拒绝的次数，线程数及队列长度直接读取绑定的线程池
+ * 线程池名称在创建时即被占用（而不是注册时），直到unbind才释放，只注销自己注册的统计
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class ThreadPoolStatistics implements ThreadPoolStatisticsMXBean, TaskDecorator {
+
+    private static final String MBEAN_DOMAIN = "com.peknight.common.concurrent";
+    private static final String MBEAN_TYPE = "ThreadPool";
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger(1);
+
+    /** 已被占用的线程池名称 */
+    private static final ConcurrentMap<String, ThreadPoolStatistics> RESERVED_NAMES = new ConcurrentHashMap<>();
+
+    private final String poolName;
+
+    private final ObjectName objectName;
+
+    private volatile ThreadPoolExecutor executor;
+
+    private final LongAdder submittedCount = new LongAdder();
+
+    private final LongAdder completedCount = new LongAdder();
+
+    private final LongAdder failedCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /** 从提交到开始执行的时间分布 */
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    /** 执行时间分布 */
+    private final LatencyHistogram runTime = new LatencyHistogram();
+
+    /** 最近10秒内完成的任务数，用于计算每秒任务数 */
+    private final SlidingWindowCounter throughput = new SlidingWindowCounter();
+
+    /**
+     * @param poolName 线程池名称，为null时自动编号，与已注册的线程池重名时自动加编号
+     */
+    public ThreadPoolStatistics(String poolName) {
+        String name = poolName == null ? "pool-" + POOL_NUMBER.getAndIncrement() : poolName;
+        ObjectName objectName = MetricsRegistry.objectName(MBEAN_DOMAIN, MBEAN_TYPE, "name", name);
+        while (!reserve(name, objectName)) {
+            name = (poolName == null ? "pool" : poolName) + "-" + POOL_NUMBER.getAndIncrement();
+            objectName = MetricsRegistry.objectName(MBEAN_DOMAIN, MBEAN_TYPE, "name", name);
+        }
+        this.poolName = name;
+        this.objectName = objectName;
+    }
+
+    /**
+     * 原子地占用名称，名称已被其它线程池占用或已注册时返回false
+     */
+    private boolean reserve(String name, ObjectName objectName) {
+        if (MetricsRegistry.getNames().contains(objectName)) {
+            return false;
+        }
+        ThreadPoolStatistics owner = RESERVED_NAMES.putIfAbsent(name, this);
+        return owner == null || owner == this;
+    }
+
+    /**
+     * 绑定线程池并注册到MetricsRegistry，unbind后再次绑定时名称已被占用则不注册
+     */
+    void bind(ThreadPoolExecutor executor) {
+        this.executor = executor;
+        ThreadPoolStatistics owner = RESERVED_NAMES.putIfAbsent(poolName, this);
+        if (owner == null || owner == this) {
+            MetricsRegistry.register(objectName, this, ThreadPoolStatisticsMXBean.class);
+        }
+    }
+
+    /**
+     * 注销并释放名称，名称不属于本线程池时不做任何操作
+     */
+    void unbind() {
+        if (RESERVED_NAMES.remove(poolName, this)) {
+            MetricsRegistry.unregister(objectName);
+        }
+    }
+
+    /**
+     * 包装提交的任务，用于统计排队时间及执行时间
+     */
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        submittedCount.increment();
+        return new TimedTask(runnable, System.nanoTime());
+    }
+
+    /**
+     * 包装拒绝策略，统计被拒绝的次数
+     */
+    RejectedExecutionHandler rejectedExecutionHandler(RejectedExecutionHandler handler) {
+        return (runnable, executor) -> {
+            rejectedCount.increment();
+            handler.rejectedExecution(runnable, executor);
+        };
+    }
+
+    @Override
+    public String getPoolName() {
+        return poolName;
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getCorePoolSize();
+    }
+
+    @Override
+    public int getMaximumPoolSize() {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public int getPoolSize() {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getPoolSize();
+    }
+
+    @Override
+    public int getLargestPoolSize() {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getLargestPoolSize();
+    }
+
+    @Override
+    public int getActiveCount() {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    @Override
+    public int getQueueSize() {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    @Override
+    public int getQueueRemainingCapacity() {
+        ThreadPoolExecutor executor = this.executor;
+        return executor == null ? 0 : executor.getQueue().remainingCapacity();
+    }
+
+    @Override
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    @Override
+    public double getTasksPerSecond() {
+        return throughput.ratePerSecond();
+    }
+
+    @Override
+    public long getMeanQueueWaitTime() {
+        return queueWait.snapshot().getMean();
+    }
+
+    @Override
+    public long getP50QueueWaitTime() {
+        return queueWait.snapshot().getP50();
+    }
+
+    @Override
+    public long getP99QueueWaitTime() {
+        return queueWait.snapshot().getP99();
+    }
+
+    @Override
+    public long getMaxQueueWaitTime() {
+        return queueWait.snapshot().getMaxValue();
+    }
+
+    @Override
+    public long getMeanRunTime() {
+        return runTime.snapshot().getMean();
+    }
+
+    @Override
+    public long getP50RunTime() {
+        return runTime.snapshot().getP50();
+    }
+
+    @Override
+    public long getP99RunTime() {
+        return runTime.snapshot().getP99();
+    }
+
+    @Override
+    public long getMaxRunTime() {
+        return runTime.snapshot().getMaxValue();
+    }
+
+    /**
+     * 排队时间分布快照（纳秒）
+     */
+    public HistogramSnapshot getQueueWaitSnapshot() {
+        return queueWait.snapshot();
+    }
+
+    /**
+     * 执行时间分布快照（纳秒）
+     */
+    public HistogramSnapshot getRunTimeSnapshot() {
+        return runTime.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot resetQueueWait() {
+        return queueWait.snapshotAndReset();
+    }
+
+    @Override
+    public HistogramSnapshot resetRunTime() {
+        return runTime.snapshotAndReset();
+    }
+
+    /**
+     * 记录提交时间的任务，被拒绝后由CallerRunsPolicy在提交线程中执行时同样统计
+     */
+    class TimedTask implements Runnable {
+
+        private final Runnable task;
+
+        private final long submitTime;
+
+        TimedTask(Runnable task, long submitTime) {
+            this.task = task;
+            this.submitTime = submitTime;
+        }
+
+        Runnable getTask() {
+            return task;
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.nanoTime();
+            queueWait.record(startTime - submitTime);
+            boolean failed = true;
+            try {
+                task.run();
+                failed = false;
+            } finally {
+                runTime.record(System.nanoTime() - startTime);
+                completedCount.increment();
+                throughput.increment();
+                if (failed) {
+                    failedCount.increment();
+                }
+            }
+        }
+    }
+}
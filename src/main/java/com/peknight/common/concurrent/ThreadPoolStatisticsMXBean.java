@@ -0,0 +1,93 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent;
+
+import com.peknight.common.metrics.HistogramSnapshot;
+
+/**
+ * 线程池的执行统计（JMX），时间单位均为纳秒
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public interface ThreadPoolStatisticsMXBean {
+
+    String getPoolName();
+
+    int getCorePoolSize();
+
+    int getMaximumPoolSize();
+
+    /** 当前线程数 */
+    int getPoolSize();
+
+    /** 线程数峰值 */
+    int getLargestPoolSize();
+
+    /** 正在执行任务的线程数（近似值） */
+    int getActiveCount();
+
+    /** 队列中等待执行的任务数 */
+    int getQueueSize();
+
+    int getQueueRemainingCapacity();
+
+    /** 提交的任务数，含被拒绝的任务 */
+    long getSubmittedCount();
+
+    /** 执行完成的任务数，含抛出异常的任务 */
+    long getCompletedCount();
+
+    /** 抛出异常的任务数，submit提交的任务异常由Future捕获，不计入 */
+    long getFailedCount();
+
+    /** 被拒绝的任务数，CallerRunsPolicy下即由提交线程自己执行的任务数 */
+    long getRejectedCount();
+
+    /** 最近10秒平均每秒完成的任务数 */
+    double getTasksPerSecond();
+
+    long getMeanQueueWaitTime();
+
+    long getP50QueueWaitTime();
+
+    long getP99QueueWaitTime();
+
+    long getMaxQueueWaitTime();
+
+    long getMeanRunTime();
+
+    long getP50RunTime();
+
+    long getP99RunTime();
+
+    long getMaxRunTime();
+
+    /** 获取排队时间分布快照并清零 */
+    HistogramSnapshot resetQueueWait();
+
+    /** 获取执行时间分布快照并清零 */
+    HistogramSnapshot resetRunTime();
+}
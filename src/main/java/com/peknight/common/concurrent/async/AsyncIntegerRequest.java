@@ -40,4 +40,9 @@ public class AsyncIntegerRequest<T> extends AsyncRequest<T> {
     public int getRequestId() {
         return requestId;
     }
+
+    @Override
+    long key() {
+        return requestId;
+    }
 }
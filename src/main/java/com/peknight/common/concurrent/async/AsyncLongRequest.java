@@ -40,4 +40,9 @@ public class AsyncLongRequest<T> extends AsyncRequest<T> {
     public long getRequestId() {
         return requestId;
     }
+
+    @Override
+    long key() {
+        return requestId;
+    }
 }
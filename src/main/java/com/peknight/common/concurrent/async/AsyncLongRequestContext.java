@@ -23,13 +23,18 @@
  */
 package com.peknight.common.concurrent.async;
 
+import com.peknight.common.concurrent.HashedWheelTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.LongUnaryOperator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  *
@@ -42,36 +47,227 @@ public class AsyncLongRequestContext<T> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncLongRequestContext.class);
 
-    /** 计数器 */
-    private final AtomicLong requestCount;
+    /** id分配器 */
+    private final LongRequestIdAllocator idAllocator;
     /** 容器 */
-    private final Map<Long, AsyncLongRequest<T>> context = new ConcurrentHashMap<>();
+    private final RequestTable<AsyncLongRequest<T>> context;
 
-    private static final LongUnaryOperator OPERATOR = operand -> operand == Long.MAX_VALUE ? 0 : ++operand;
+    /** 超时定时器，为null时请求不会自动超时 */
+    private final HashedWheelTimer timer;
+
+    private final long timeoutInNanos;
+
+    /** 以TimeoutException完成超时请求的线程池，请求的后续处理在其中执行，不占用定时器线程 */
+    private final Executor timeoutExecutor;
+
+    /** 超时的请求数 */
+    private final LongAdder timeoutCount = new LongAdder();
+
+    /** 响应到达时请求已不在容器中（已超时、已删除或未知的id）的次数 */
+    private final LongAdder lateResponseCount = new LongAdder();
 
     public AsyncLongRequestContext(AtomicLong requestCount) {
-        this.requestCount = requestCount;
+        this(requestCount, 0, null, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param slotCapacity 大于0时使用环形槽位数组存放请求（按 id % slotCapacity 定位，适用于id递增分配），
+     *                     应不小于同时未完成的请求数，否则超出部分存放在溢出Map中
+     */
+    public AsyncLongRequestContext(AtomicLong requestCount, int slotCapacity) {
+        this(requestCount, slotCapacity, null, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timer 超时定时器，可由多个容器共用
+     * @param timeout 请求超时时间，超时的请求以TimeoutException完成并从容器中删除
+     */
+    public AsyncLongRequestContext(AtomicLong requestCount, HashedWheelTimer timer, long timeout, TimeUnit unit) {
+        this(requestCount, 0, timer, timeout, unit);
+    }
+
+    /**
+     * @param slotCapacity 大于0时使用环形槽位数组存放请求，小于等于0时使用ConcurrentHashMap
+     * @param timer 超时定时器，为null时请求不会自动超时
+     * @param timeout 请求超时时间
+     */
+    public AsyncLongRequestContext(AtomicLong requestCount, int slotCapacity,
+                                   HashedWheelTimer timer, long timeout, TimeUnit unit) {
+        this(new LongRequestIdAllocator(requestCount), slotCapacity, timer, timeout, unit);
+    }
+
+    /**
+     * @param idAllocator id分配器，按线程分段分配id时，同时未完成的id跨度会增加（线程数 * blockSize），
+     *                    使用环形槽位数组时slotCapacity应相应增大
+     * @param slotCapacity 大于0时使用环形槽位数组存放请求，小于等于0时使用ConcurrentHashMap
+     * @param timer 超时定时器，为null时请求不会自动超时
+     * @param timeout 请求超时时间
+     */
+    public AsyncLongRequestContext(LongRequestIdAllocator idAllocator, int slotCapacity,
+                                   HashedWheelTimer timer, long timeout, TimeUnit unit) {
+        this(idAllocator, slotCapacity, timer, timeout, unit, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param timer 超时定时器，为null时请求不会自动超时，定时器线程只负责找出到期的请求
+     * @param timeoutExecutor 以TimeoutException完成超时请求的线程池，
+     *                        未指定Executor的thenApply、whenComplete等后续处理在其中执行
+     */
+    public AsyncLongRequestContext(LongRequestIdAllocator idAllocator, int slotCapacity,
+                                   HashedWheelTimer timer, long timeout, TimeUnit unit, Executor timeoutExecutor) {
+        this.idAllocator = idAllocator;
+        this.context = slotCapacity > 0 ? new RingRequestTable<>(slotCapacity) : new MapRequestTable<>();
+        this.timer = timer;
+        this.timeoutInNanos = unit.toNanos(timeout);
+        this.timeoutExecutor = timeoutExecutor;
     }
 
     /** 创建Request */
     public AsyncLongRequest<T> createRequest() {
-        long requestId = requestCount.updateAndGet(OPERATOR);
+        long requestId = idAllocator.next();
         AsyncLongRequest<T> request = new AsyncLongRequest<>(requestId);
-        context.put(requestId, request);
+        request.table = context;
+        context.put(request);
+        if (timer != null) {
+            try {
+                HashedWheelTimer.Timeout expiry = timer.newTimeout(() -> executeTimeout(() -> expire(request)),
+                        timeoutInNanos, TimeUnit.NANOSECONDS);
+                request.expiry = expiry;
+                // 设置超时任务前请求已完成
+                if (request.isDone()) {
+                    expiry.cancel();
+                }
+            } catch (IllegalStateException e) {
+                // 定时器已停止
+                context.remove(request);
+                throw e;
+            }
+        }
         return request;
     }
 
-    /** 释放Request */
+    /**
+     * 批量创建Request，一次原子操作分配count个连续的id（到达最大值时从0重新开始，不跨越最大值），
+     * 开启超时时整批只添加一个超时任务，超时任务只记录id范围，整批请求都完成时取消
+     */
+    public List<AsyncLongRequest<T>> createRequests(int count) {
+        long firstId = idAllocator.reserve(count);
+        List<AsyncLongRequest<T>> requests = new ArrayList<>(count);
+        RequestBatch batch = timer != null ? new RequestBatch(count) : null;
+        for (int i = 0; i < count; i++) {
+            AsyncLongRequest<T> request = new AsyncLongRequest<>(firstId + i);
+            request.table = context;
+            request.batch = batch;
+            context.put(request);
+            requests.add(request);
+        }
+        if (batch != null) {
+            try {
+                // 只引用id范围，不引用请求列表，已完成的请求可被回收
+                batch.setTimeout(timer.newTimeout(() -> executeTimeout(() -> expire(firstId, count)),
+                        timeoutInNanos, TimeUnit.NANOSECONDS));
+            } catch (IllegalStateException e) {
+                // 定时器已停止
+                for (AsyncLongRequest<T> request : requests) {
+                    context.remove(request);
+                }
+                throw e;
+            }
+        }
+        return requests;
+    }
+
+    /** 释放Request，完成后从容器中删除 */
     public void releaseRequest(long requestId, T value) {
-        if (context.containsKey(requestId)) {
-            context.get(requestId).setValue(value);
+        AsyncLongRequest<T> request = context.remove(requestId);
+        if (request != null) {
+            request.cancelExpiry();
+            request.setValue(value);
         } else {
+            lateResponseCount.increment();
             LOGGER.warn("Missing Request [{} : {}]", requestId, value);
         }
     }
 
+    /**
+     * 批量释放Request，requestIds与values一一对应，已不在容器中的响应只计数并汇总输出一条日志
+     */
+    public void releaseRequests(long[] requestIds, T[] values) {
+        if (requestIds.length != values.length) {
+            throw new IllegalArgumentException("requestIds and values must have the same length");
+        }
+        int missing = 0;
+        for (int i = 0; i < requestIds.length; i++) {
+            AsyncLongRequest<T> request = context.remove(requestIds[i]);
+            if (request != null) {
+                request.cancelExpiry();
+                request.setValue(values[i]);
+            } else {
+                missing++;
+            }
+        }
+        if (missing > 0) {
+            lateResponseCount.add(missing);
+            LOGGER.warn("Missing {} of {} Requests", missing, requestIds.length);
+        }
+    }
+
+    /** Request失败，完成后从容器中删除 */
+    public void failRequest(long requestId, Throwable cause) {
+        AsyncLongRequest<T> request = context.remove(requestId);
+        if (request != null) {
+            request.cancelExpiry();
+            request.fail(cause);
+        } else {
+            lateResponseCount.increment();
+            LOGGER.warn("Missing Request [{} : {}]", requestId, cause.toString());
+        }
+    }
+
     /** 删除Request */
     public void removeRequest(long requestId) {
-        context.remove(requestId);
+        AsyncLongRequest<T> request = context.remove(requestId);
+        if (request != null) {
+            request.cancelExpiry();
+        }
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getLateResponseCount() {
+        return lateResponseCount.sum();
+    }
+
+    /**
+     * 在timeoutExecutor中执行超时处理，被拒绝时在当前线程中执行
+     */
+    private void executeTimeout(Runnable task) {
+        try {
+            timeoutExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Timeout task has been rejected by executor: {}", e.toString());
+            task.run();
+        }
+    }
+
+    /** 请求超时，仍在容器中时删除并以TimeoutException完成 */
+    private void expire(AsyncLongRequest<T> request) {
+        if (context.remove(request)) {
+            timeoutCount.increment();
+            request.timeout();
+        }
+    }
+
+    /** 批量创建的请求超时，按id删除仍在容器中的请求并以TimeoutException完成 */
+    private void expire(long firstId, int count) {
+        for (int i = 0; i < count; i++) {
+            AsyncLongRequest<T> request = context.remove(firstId + i);
+            if (request != null) {
+                timeoutCount.increment();
+                request.timeout();
+            }
+        }
     }
 }
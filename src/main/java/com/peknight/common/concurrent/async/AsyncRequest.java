@@ -23,49 +23,189 @@
  */
 package com.peknight.common.concurrent.async;
 
+import com.peknight.common.concurrent.HashedWheelTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- *
+ * 异步请求，本身即为CompletableFuture，可通过thenApply、thenAccept、allOf等组合后续处理而无需占用线程等待
+ * 请求的结果分为：收到响应（setValue）、失败（fail）、超时（timeout）、取消（cancel），
+ * 以任何方式完成时（包括直接调用complete、completeExceptionally）同时从所在的请求容器中删除并取消超时任务，
+ * 失败、超时、取消时get()分别抛出以原因为cause的ExecutionException、以TimeoutException为cause的ExecutionException、
+ * CancellationException
+ * await()保留原有的阻塞等待方式，等待超时、被中断或请求未正常完成时返回null
  *
  * @author PeKnight
  *
  * Created by PeKnight on 2017/11/3.
  */
-public class AsyncRequest<T> {
+public class AsyncRequest<T> extends CompletableFuture<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncRequest.class);
 
-    private CountDownLatch latch = new CountDownLatch(1);
-    private T value;
+    /** 请求容器设置的超时任务，请求完成后取消 */
+    volatile HashedWheelTimer.Timeout expiry;
+
+    /** 所在的请求表，由请求容器在放入前设置，取消请求时从中删除 */
+    RequestTable<?> table;
+
+    /** 批量创建时所在的批次，整批共用一个超时任务 */
+    RequestBatch batch;
 
     public T await(long wait, TimeUnit unit) {
         try {
-            latch.await(wait, unit);
+            return get(wait, unit);
         } catch (InterruptedException e) {
             LOGGER.error("Interrupted while wait for async callback");
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException | TimeoutException e) {
+            // 请求未正常完成或等待超时，返回null
         }
-        return value;
+        return null;
     }
 
     public T await() {
         try {
-            latch.await();
+            return get();
         } catch (InterruptedException e) {
             LOGGER.error("Interrupted while wait for async callback");
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // 请求未正常完成，返回null
         }
-        return value;
+        return null;
     }
 
+    /**
+     * 已收到响应时返回响应值，否则返回null
+     */
     public T getValue() {
-        return value;
+        return isDone() && !isCompletedExceptionally() ? join() : null;
     }
 
+    /**
+     * 设置响应值，请求已完成时忽略
+     */
     public void setValue(T value) {
-        this.value = value;
-        latch.countDown();
+        complete(value);
+    }
+
+    /**
+     * 请求失败
+     *
+     * @return 请求之前是否未完成
+     */
+    public boolean fail(Throwable cause) {
+        return completeExceptionally(cause);
+    }
+
+    /**
+     * 请求超时
+     *
+     * @return 请求之前是否未完成
+     */
+    public boolean timeout() {
+        return completeExceptionally(new TimeoutException("Async request timed out"));
+    }
+
+    /**
+     * 取消请求，并从所在的请求容器中删除、取消超时任务
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            detach();
+        }
+        return cancelled;
+    }
+
+    /**
+     * 完成请求，并从所在的请求容器中删除、取消超时任务
+     */
+    @Override
+    public boolean complete(T value) {
+        boolean completed = super.complete(value);
+        if (completed) {
+            detach();
+        }
+        return completed;
+    }
+
+    /**
+     * 以异常完成请求，并从所在的请求容器中删除、取消超时任务，fail、timeout均经过此方法
+     */
+    @Override
+    public boolean completeExceptionally(Throwable ex) {
+        boolean completed = super.completeExceptionally(ex);
+        if (completed) {
+            detach();
+        }
+        return completed;
+    }
+
+    @Override
+    public void obtrudeValue(T value) {
+        super.obtrudeValue(value);
+        detach();
+    }
+
+    @Override
+    public void obtrudeException(Throwable ex) {
+        super.obtrudeException(ex);
+        detach();
+    }
+
+    /**
+     * 仍在请求容器中时删除并取消超时任务，请求容器已先行删除时不做任何操作
+     */
+    @SuppressWarnings("unchecked")
+    private void detach() {
+        RequestTable<AsyncRequest<?>> requestTable = (RequestTable<AsyncRequest<?>>) table;
+        if (requestTable != null && requestTable.remove(this)) {
+            cancelExpiry();
+        }
+    }
+
+    /**
+     * 是否因超时而完成
+     */
+    public boolean isTimedOut() {
+        if (!isCompletedExceptionally() || isCancelled()) {
+            return false;
+        }
+        try {
+            join();
+        } catch (CompletionException e) {
+            return e.getCause() instanceof TimeoutException;
+        }
+        return false;
+    }
+
+    /**
+     * 在请求表中的键，AsyncLongRequest、AsyncIntegerRequest返回请求id
+     */
+    long key() {
+        return 0;
+    }
+
+    /**
+     * 请求已从容器中删除时调用，取消超时任务，批量创建的请求在整批都完成时才取消
+     */
+    void cancelExpiry() {
+        HashedWheelTimer.Timeout timeout = expiry;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        RequestBatch requestBatch = batch;
+        if (requestBatch != null) {
+            requestBatch.release();
+        }
     }
 }
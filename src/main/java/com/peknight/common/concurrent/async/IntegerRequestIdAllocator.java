@@ -0,0 +1,93 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent.async;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 请求id分配器，id递增，到达最大值后从0重新开始
+ * blockSize大于1时每个线程一次从共享计数器中取出blockSize个连续id，用完后再取下一段，
+ * 大量线程同时创建请求时不再争用同一个计数器；各线程取到的id段互不重叠，id仍然唯一，但不再按创建顺序全局递增
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class IntegerRequestIdAllocator {
+
+    private static final IntUnaryOperator OPERATOR = operand -> operand == Integer.MAX_VALUE ? 0 : ++operand;
+
+    /** 计数器，可由多个分配器共用 */
+    private final AtomicInteger requestCount;
+
+    private final int blockSize;
+
+    /** 每个线程当前的id段，[0]为下一个id，[1]为段的结束（不含） */
+    private final ThreadLocal<int[]> blocks = ThreadLocal.withInitial(() -> new int[2]);
+
+    public IntegerRequestIdAllocator(AtomicInteger requestCount) {
+        this(requestCount, 1);
+    }
+
+    /**
+     * @param blockSize 每个线程一次取出的id数
+     */
+    public IntegerRequestIdAllocator(AtomicInteger requestCount, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        this.requestCount = requestCount;
+        this.blockSize = blockSize;
+    }
+
+    public int next() {
+        if (blockSize == 1) {
+            return requestCount.updateAndGet(OPERATOR);
+        }
+        int[] block = blocks.get();
+        if (block[0] == block[1]) {
+            int firstId = reserve(blockSize);
+            block[0] = firstId;
+            // 段的最后一个id为最大值时溢出为最小值，与block[0]自增溢出后的值仍然相等
+            block[1] = firstId + blockSize;
+        }
+        return block[0]++;
+    }
+
+    /**
+     * 一次原子操作分配count个连续的id（不跨越最大值），返回第一个id
+     */
+    public int reserve(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        return requestCount.updateAndGet(
+                operand -> operand > Integer.MAX_VALUE - count ? count - 1 : operand + count) - count + 1;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+}
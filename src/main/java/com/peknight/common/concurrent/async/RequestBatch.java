@@ -0,0 +1,73 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent.async;
+
+import com.peknight.common.concurrent.HashedWheelTimer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量创建的一批请求共用的超时任务，整批请求都已完成时取消
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+final class RequestBatch {
+
+    /** 尚未完成的请求数 */
+    private final AtomicInteger remaining;
+
+    private volatile HashedWheelTimer.Timeout timeout;
+
+    RequestBatch(int count) {
+        this.remaining = new AtomicInteger(count);
+    }
+
+    /**
+     * 设置超时任务，此前整批请求已完成时直接取消
+     */
+    void setTimeout(HashedWheelTimer.Timeout timeout) {
+        this.timeout = timeout;
+        if (remaining.get() == 0) {
+            timeout.cancel();
+        }
+    }
+
+    HashedWheelTimer.Timeout timeout() {
+        return timeout;
+    }
+
+    /**
+     * 一个请求已从容器中删除，每个请求只调用一次，最后一个请求完成时取消超时任务
+     */
+    void release() {
+        if (remaining.decrementAndGet() == 0) {
+            HashedWheelTimer.Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent.async;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 环形槽位数组实现的请求表，适用于请求id递增分配的场景
+ * 请求放在 id % capacity 的槽位中，查找时比较槽位中请求的id（同一槽位上不同轮次的id不同，相当于代数校验），
+ * 存取均为一次数组访问和一次CAS，不装箱、不分配内存，相邻请求在内存中也相邻
+ * 槽位仍被上一轮未完成的请求占用时（未完成请求数超过容量），新请求放入溢出Map
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+final class RingRequestTable<R extends AsyncRequest<?>> implements RequestTable<R> {
+
+    private final AtomicReferenceArray<R> slots;
+
+    private final int mask;
+
+    private final ConcurrentHashMap<Long, R> overflow = new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity 槽位数，会向上取整为2的幂
+     */
+    RingRequestTable(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be positive and not greater than 2^30");
+        }
+        int length = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(length);
+        this.mask = length - 1;
+    }
+
+    @Override
+    public void put(R request) {
+        if (!slots.compareAndSet(index(request.key()), null, request)) {
+            overflow.put(request.key(), request);
+        }
+    }
+
+    @Override
+    public R remove(long requestId) {
+        int index = index(requestId);
+        R request = slots.get(index);
+        if (request != null && request.key() == requestId && slots.compareAndSet(index, request, null)) {
+            return request;
+        }
+        return overflow.isEmpty() ? null : overflow.remove(requestId);
+    }
+
+    @Override
+    public boolean remove(R request) {
+        return slots.compareAndSet(index(request.key()), request, null) || overflow.remove(request.key(), request);
+    }
+
+    @Override
+    public int size() {
+        int size = overflow.size();
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private int index(long requestId) {
+        return (int) requestId & mask;
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent.lock;
+
+/**
+ * 精确模式下id到锁的映射表
+ * 以long为键（int键直接扩展为long），分段后每段使用开放寻址（线性探测）的原始类型数组存储，不装箱，
+ * 每次操作只在所属分段内查找一次，锁已存在时不分配内存；删除时回移后续元素，不留墓碑
+ * 分段内的操作只有数组读写，使用分段对象的监视器同步
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+final class IdentityLockTable {
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    private final Segment[] segments;
+
+    /** 哈希值右移segmentShift位得到分段下标 */
+    private final int segmentShift;
+
+    private final boolean fair;
+
+    IdentityLockTable(boolean fair) {
+        int concurrency = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+        int segmentCount = Integer.highestOneBit(concurrency - 1) << 1;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment();
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        this.fair = fair;
+    }
+
+    /**
+     * 获取id对应的锁并增加一次引用，不存在时创建
+     */
+    IdentityReentrantLock reference(long id) {
+        int hash = IdentityReentrantLock.hash(id);
+        return segments[hash >>> segmentShift].reference(id, hash, fair);
+    }
+
+    /**
+     * 获取id对应的锁，不存在时返回null
+     */
+    IdentityReentrantLock get(long id) {
+        int hash = IdentityReentrantLock.hash(id);
+        return segments[hash >>> segmentShift].get(id, hash);
+    }
+
+    /**
+     * 减少一次引用，归零时移除
+     *
+     * @param owned 是否要求当前线程持有该锁，不持有时抛出IllegalMonitorStateException且不减少引用
+     * @return id对应的锁，不存在时返回null
+     */
+    IdentityReentrantLock dereference(long id, boolean owned) {
+        int hash = IdentityReentrantLock.hash(id);
+        return segments[hash >>> segmentShift].dereference(id, hash, owned);
+    }
+
+    /**
+     * 当前存在的锁数量
+     */
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private static final class Segment {
+
+        private long[] keys = new long[INITIAL_SEGMENT_CAPACITY];
+
+        /** 为null的位置为空 */
+        private IdentityReentrantLock[] locks = new IdentityReentrantLock[INITIAL_SEGMENT_CAPACITY];
+
+        private int size = 0;
+
+        synchronized IdentityReentrantLock reference(long id, int hash, boolean fair) {
+            int mask = keys.length - 1;
+            int index = hash & mask;
+            IdentityReentrantLock lock;
+            while ((lock = locks[index]) != null) {
+                if (keys[index] == id) {
+                    lock.references++;
+                    return lock;
+                }
+                index = (index + 1) & mask;
+            }
+            lock = new IdentityReentrantLock(fair);
+            lock.references = 1;
+            keys[index] = id;
+            locks[index] = lock;
+            if (++size > keys.length - (keys.length >>> 2)) {
+                resize(keys.length << 1);
+            }
+            return lock;
+        }
+
+        synchronized IdentityReentrantLock get(long id, int hash) {
+            int mask = keys.length - 1;
+            int index = hash & mask;
+            IdentityReentrantLock lock;
+            while ((lock = locks[index]) != null) {
+                if (keys[index] == id) {
+                    return lock;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        synchronized IdentityReentrantLock dereference(long id, int hash, boolean owned) {
+            int mask = keys.length - 1;
+            int index = hash & mask;
+            IdentityReentrantLock lock;
+            while ((lock = locks[index]) != null) {
+                if (keys[index] == id) {
+                    if (owned && !lock.isHeldByCurrentThread()) {
+                        throw new IllegalMonitorStateException();
+                    }
+                    if (--lock.references == 0) {
+                        remove(index);
+                    }
+                    return lock;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * 删除index位置的元素，并将其后探测链上的元素回移
+         */
+        private void remove(int index) {
+            int mask = keys.length - 1;
+            int hole = index;
+            int next = (hole + 1) & mask;
+            while (locks[next] != null) {
+                int home = IdentityReentrantLock.hash(keys[next]) & mask;
+                // home不在(hole, next]区间内时，元素可以回移到hole
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    locks[hole] = locks[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            locks[hole] = null;
+            size--;
+            if (keys.length > INITIAL_SEGMENT_CAPACITY && size < keys.length >>> 3) {
+                resize(keys.length >>> 1);
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            IdentityReentrantLock[] oldLocks = locks;
+            keys = new long[capacity];
+            locks = new IdentityReentrantLock[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldLocks.length; i++) {
+                if (oldLocks[i] != null) {
+                    int index = IdentityReentrantLock.hash(oldKeys[i]) & mask;
+                    while (locks[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    locks[index] = oldLocks[i];
+                }
+            }
+        }
+    }
+}
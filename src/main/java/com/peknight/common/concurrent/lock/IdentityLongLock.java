@@ -23,44 +23,123 @@
  */
 package com.peknight.common.concurrent.lock;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.locks.ReentrantLock;
+import com.peknight.common.concurrent.ReferenceLock;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 /**
- *
+ * 按id加锁，相同id的lock/unlock互斥（可重入），不同id互不影响
+ * 精确模式（默认）：每个id对应一个锁，记录持有及等待的次数，最后一个持有者unlock时自动回收
+ * 分段模式：id映射到固定数量（2的幂）的锁上，不随id数量增长占用内存，不同id可能落在同一分段而互斥
+ * 未能立即获取锁时记录竞争统计（等待时间、排队长度），可通过getContentionStatistics()找出竞争激烈的id
  *
  * @author PeKnight
  *
  * Created by PeKnight on 2017/11/3.
  */
-public class IdentityLongLock {
-    private final ConcurrentHashMap<Long, ReentrantLock> LOCK_MAP = new ConcurrentHashMap<>();
+public class IdentityLongLock implements ReferenceLock<Long> {
+    /** 精确模式下的锁表，分段模式下为null */
+    private final IdentityLockTable LOCK_TABLE;
 
-    private final ConcurrentHashMap<Long, Semaphore> ACCESS_MAP = new ConcurrentHashMap<>();
+    /** 分段模式下的锁数组，精确模式下为null */
+    private final IdentityReentrantLock[] STRIPES;
 
-    private boolean fair = false;
+    /** acquire/release使用的按id信号 */
+    private final IdentitySignal ACCESS_SIGNAL = new IdentitySignal();
 
-    public IdentityLongLock() {}
+    private final LockContentionStatistics statistics = new LockContentionStatistics();
+
+    public IdentityLongLock() {
+        this(false);
+    }
 
     public IdentityLongLock(boolean fair) {
-        this.fair = fair;
+        this.LOCK_TABLE = new IdentityLockTable(fair);
+        this.STRIPES = null;
+    }
+
+    /**
+     * 分段模式
+     *
+     * @param stripes 分段数，向上取整为2的幂
+     */
+    public IdentityLongLock(boolean fair, int stripes) {
+        this.LOCK_TABLE = null;
+        this.STRIPES = IdentityReentrantLock.newStripes(stripes, fair);
     }
 
     public void lock(long id) {
-        LOCK_MAP.putIfAbsent(id, new ReentrantLock(fair));
-        LOCK_MAP.get(id).lock();
+        if (STRIPES != null) {
+            stripe(id).lock(id, statistics);
+            return;
+        }
+        LOCK_TABLE.reference(id).lock(id, statistics);
+    }
+
+    public void lockInterruptibly(long id) throws InterruptedException {
+        if (STRIPES != null) {
+            stripe(id).lockInterruptibly(id, statistics);
+            return;
+        }
+        IdentityReentrantLock lock = LOCK_TABLE.reference(id);
+        try {
+            lock.lockInterruptibly(id, statistics);
+        } catch (InterruptedException e) {
+            LOCK_TABLE.dereference(id, false);
+            throw e;
+        }
+    }
+
+    /**
+     * 锁未被其它线程持有时立即获取并返回true，否则返回false，与ReentrantLock.tryLock()一样不保证公平性
+     */
+    public boolean tryLock(long id) {
+        if (STRIPES != null) {
+            return stripe(id).tryLock();
+        }
+        if (LOCK_TABLE.reference(id).tryLock()) {
+            return true;
+        }
+        LOCK_TABLE.dereference(id, false);
+        return false;
+    }
+
+    public boolean tryLock(long id, long timeout, TimeUnit unit) throws InterruptedException {
+        if (STRIPES != null) {
+            return stripe(id).tryLock(id, timeout, unit, statistics);
+        }
+        IdentityReentrantLock lock = LOCK_TABLE.reference(id);
+        boolean acquired = false;
+        try {
+            acquired = lock.tryLock(id, timeout, unit, statistics);
+        } finally {
+            if (!acquired) {
+                LOCK_TABLE.dereference(id, false);
+            }
+        }
+        return acquired;
     }
 
     public void unlock(long id) {
-        ReentrantLock lock = LOCK_MAP.get(id);
-        if (lock != null) {
-            lock.unlock();
+        if (STRIPES != null) {
+            stripe(id).unlock();
+            return;
+        }
+        // 非持有者unlock或id未加锁时抛出IllegalMonitorStateException，不减少引用次数
+        // 引用归零时先从锁表移除再解锁，此时没有其它线程引用该锁
+        IdentityReentrantLock lock = LOCK_TABLE.dereference(id, true);
+        if (lock == null) {
+            throw new IllegalMonitorStateException("id " + id + " is not locked");
         }
+        lock.unlock();
     }
 
     public boolean isLocked(long id) {
-        ReentrantLock lock = LOCK_MAP.get(id);
+        if (STRIPES != null) {
+            return stripe(id).isLocked();
+        }
+        IdentityReentrantLock lock = LOCK_TABLE.get(id);
         if (lock == null) {
             return false;
         } else {
@@ -68,29 +147,137 @@ public class IdentityLongLock {
         }
     }
 
+    /**
+     * 可中断地加锁
+     */
+    @Override
+    public void lock(Long id) throws InterruptedException {
+        lockInterruptibly(id.longValue());
+    }
+
+    @Override
+    public boolean tryLock(Long id) {
+        return tryLock(id.longValue());
+    }
+
+    @Override
+    public boolean tryLock(Long id, long acquire, TimeUnit unit) throws InterruptedException {
+        return tryLock(id.longValue(), acquire, unit);
+    }
+
+    @Override
+    public void unlock(Long id) {
+        unlock(id.longValue());
+    }
+
+    @Override
+    public boolean isLocked(Long id) {
+        return isLocked(id.longValue());
+    }
+
+    /**
+     * 按规范顺序（精确模式按id升序，分段模式按分段下标升序）依次加锁，重复的id或同一分段只加锁一次，
+     * 多个线程以不同顺序对多个id加锁时不会死锁
+     */
+    public void lockAll(long... ids) {
+        if (STRIPES != null) {
+            for (long key : orderByStripe(ids)) {
+                stripe(ids[(int) key]).lock(ids[(int) key], statistics);
+            }
+            return;
+        }
+        for (long id : orderById(ids)) {
+            LOCK_TABLE.reference(id).lock(id, statistics);
+        }
+    }
+
+    /**
+     * 释放lockAll获取的锁
+     */
+    public void unlockAll(long... ids) {
+        if (STRIPES != null) {
+            for (long key : orderByStripe(ids)) {
+                stripe(ids[(int) key]).unlock();
+            }
+            return;
+        }
+        long[] sortedIds = orderById(ids);
+        for (int i = sortedIds.length - 1; i >= 0; i--) {
+            unlock(sortedIds[i]);
+        }
+    }
+
+    /**
+     * 升序且去重的id
+     */
+    private static long[] orderById(long[] ids) {
+        long[] sortedIds = ids.clone();
+        Arrays.sort(sortedIds);
+        int length = 0;
+        for (int i = 0; i < sortedIds.length; i++) {
+            if (length == 0 || sortedIds[i] != sortedIds[length - 1]) {
+                sortedIds[length++] = sortedIds[i];
+            }
+        }
+        return length == sortedIds.length ? sortedIds : Arrays.copyOf(sortedIds, length);
+    }
+
+    /**
+     * 按分段下标升序且每个分段只保留一个id，高32位为分段下标，低32位为id在ids中的下标
+     */
+    private long[] orderByStripe(long[] ids) {
+        long[] keys = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            keys[i] = (long) IdentityReentrantLock.stripe(ids[i], STRIPES.length - 1) << 32 | i;
+        }
+        Arrays.sort(keys);
+        int length = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (length == 0 || keys[i] >>> 32 != keys[length - 1] >>> 32) {
+                keys[length++] = keys[i];
+            }
+        }
+        return length == keys.length ? keys : Arrays.copyOf(keys, length);
+    }
+
+    public LockContentionStatistics getContentionStatistics() {
+        return statistics;
+    }
+
+    /**
+     * 等待id可用并占用，id初始为可用状态，不响应中断
+     */
     public void acquire(long id) {
-        ACCESS_MAP.putIfAbsent(id, new Semaphore(1, fair));
-        Semaphore semaphore = ACCESS_MAP.get(id);
-        semaphore.acquireUninterruptibly();
-        semaphore.drainPermits();
+        ACCESS_SIGNAL.await(id);
     }
 
+    /**
+     * 在超时时间内等待id可用并占用，超时返回false
+     */
+    public boolean tryAcquire(long id, long timeout, TimeUnit unit) throws InterruptedException {
+        return ACCESS_SIGNAL.await(id, timeout, unit);
+    }
+
+    /**
+     * 释放id，有线程等待时交给最先等待的线程
+     */
     public void release(long id) {
-        ACCESS_MAP.putIfAbsent(id, new Semaphore(0, fair));
-        ACCESS_MAP.get(id).release();
+        ACCESS_SIGNAL.signal(id);
     }
 
     public boolean isAvailable(long id) {
-        Semaphore semaphore = ACCESS_MAP.get(id);
-        if (semaphore == null) {
-            return true;
-        } else {
-            return semaphore.availablePermits() > 0;
-        }
+        return ACCESS_SIGNAL.isSignalled(id);
     }
 
+    /**
+     * 清除acquire/release的状态，id恢复为可用，有线程等待时不清除
+     * 锁在最后一个持有者unlock时自动回收，acquire/release的状态在id可用且无线程等待时自动回收，通常无需移除
+     */
     public void remove(long id) {
-        LOCK_MAP.remove(id);
-        ACCESS_MAP.remove(id);
+        ACCESS_SIGNAL.clear(id);
+    }
+
+    private IdentityReentrantLock stripe(long id) {
+        return STRIPES[IdentityReentrantLock.stripe(id, STRIPES.length - 1)];
     }
 }
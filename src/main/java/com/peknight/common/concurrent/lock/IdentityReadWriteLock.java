@@ -0,0 +1,211 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent.lock;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 按id加读写锁，相同id的读锁之间共享，写锁独占，适用于读多写少的场景
+ * id映射到固定数量（2的幂）的StampedLock上（分段模式），不随id数量增长占用内存，不同id可能落在同一分段
+ * 支持乐观读：tryOptimisticRead后读取数据，再validate校验期间没有写锁，校验失败时再获取读锁重读
+ * StampedLock不可重入，同一线程重复获取同一分段的写锁会死锁
+ * int类型的id直接扩展为long使用
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class IdentityReadWriteLock {
+
+    private static final int DEFAULT_STRIPES = 1024;
+
+    private final PaddedStampedLock[] stripes;
+
+    private final int mask;
+
+    public IdentityReadWriteLock() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes 分段数，向上取整为2的幂
+     */
+    public IdentityReadWriteLock(int stripes) {
+        if (stripes <= 0 || stripes > 1 << 30) {
+            throw new IllegalArgumentException("stripes must be positive and not greater than 2^30");
+        }
+        int length = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new PaddedStampedLock[length];
+        for (int i = 0; i < length; i++) {
+            this.stripes[i] = new PaddedStampedLock();
+        }
+        this.mask = length - 1;
+    }
+
+    public long readLock(long id) {
+        return stripe(id).readLock();
+    }
+
+    public long readLockInterruptibly(long id) throws InterruptedException {
+        return stripe(id).readLockInterruptibly();
+    }
+
+    /**
+     * 获取成功时返回stamp，否则返回0
+     */
+    public long tryReadLock(long id) {
+        return stripe(id).tryReadLock();
+    }
+
+    /**
+     * 获取成功时返回stamp，超时返回0
+     */
+    public long tryReadLock(long id, long timeout, TimeUnit unit) throws InterruptedException {
+        return stripe(id).tryReadLock(timeout, unit);
+    }
+
+    public void unlockRead(long id, long stamp) {
+        stripe(id).unlockRead(stamp);
+    }
+
+    public long writeLock(long id) {
+        return stripe(id).writeLock();
+    }
+
+    public long writeLockInterruptibly(long id) throws InterruptedException {
+        return stripe(id).writeLockInterruptibly();
+    }
+
+    /**
+     * 获取成功时返回stamp，否则返回0
+     */
+    public long tryWriteLock(long id) {
+        return stripe(id).tryWriteLock();
+    }
+
+    /**
+     * 获取成功时返回stamp，超时返回0
+     */
+    public long tryWriteLock(long id, long timeout, TimeUnit unit) throws InterruptedException {
+        return stripe(id).tryWriteLock(timeout, unit);
+    }
+
+    public void unlockWrite(long id, long stamp) {
+        stripe(id).unlockWrite(stamp);
+    }
+
+    /**
+     * 释放读锁或写锁
+     */
+    public void unlock(long id, long stamp) {
+        stripe(id).unlock(stamp);
+    }
+
+    /**
+     * 获取乐观读的stamp，不阻塞写锁，持有写锁时返回0
+     */
+    public long tryOptimisticRead(long id) {
+        return stripe(id).tryOptimisticRead();
+    }
+
+    /**
+     * 校验获取stamp之后是否有写锁，stamp为0时总是返回false
+     */
+    public boolean validate(long id, long stamp) {
+        return stripe(id).validate(stamp);
+    }
+
+    /**
+     * 读锁升级为写锁，仅在没有其它读锁时成功，成功时返回新的stamp，否则返回0
+     */
+    public long tryConvertToWriteLock(long id, long stamp) {
+        return stripe(id).tryConvertToWriteLock(stamp);
+    }
+
+    public boolean isReadLocked(long id) {
+        return stripe(id).isReadLocked();
+    }
+
+    public boolean isWriteLocked(long id) {
+        return stripe(id).isWriteLocked();
+    }
+
+    /**
+     * 按分段下标升序依次获取写锁，多个id落在同一分段时只获取一次，多个线程以不同顺序对多个id加锁时不会死锁
+     *
+     * @return 各分段的stamp，需与ids一起原样传给unlockWriteAll
+     */
+    public long[] writeLockAll(long... ids) {
+        int[] stripeIndexes = getStripes(ids);
+        long[] stamps = new long[stripeIndexes.length];
+        for (int i = 0; i < stripeIndexes.length; i++) {
+            stamps[i] = stripes[stripeIndexes[i]].writeLock();
+        }
+        return stamps;
+    }
+
+    /**
+     * 释放writeLockAll获取的写锁
+     */
+    public void unlockWriteAll(long[] ids, long[] stamps) {
+        int[] stripeIndexes = getStripes(ids);
+        for (int i = stripeIndexes.length - 1; i >= 0; i--) {
+            stripes[stripeIndexes[i]].unlockWrite(stamps[i]);
+        }
+    }
+
+    /**
+     * 获取多个id对应的分段下标，升序且去重
+     */
+    private int[] getStripes(long[] ids) {
+        int[] stripeIndexes = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            stripeIndexes[i] = IdentityReentrantLock.stripe(ids[i], mask);
+        }
+        Arrays.sort(stripeIndexes);
+        int length = 0;
+        for (int i = 0; i < stripeIndexes.length; i++) {
+            if (length == 0 || stripeIndexes[i] != stripeIndexes[length - 1]) {
+                stripeIndexes[length++] = stripeIndexes[i];
+            }
+        }
+        return length == stripeIndexes.length ? stripeIndexes : Arrays.copyOf(stripeIndexes, length);
+    }
+
+    private StampedLock stripe(long id) {
+        return stripes[IdentityReentrantLock.stripe(id, mask)];
+    }
+
+    /**
+     * StampedLock的状态字段在锁对象自身，填充字段避免相邻的锁对象落在同一缓存行产生伪共享
+     */
+    private static final class PaddedStampedLock extends StampedLock {
+
+        private static final long serialVersionUID = -2746397465271563125L;
+
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
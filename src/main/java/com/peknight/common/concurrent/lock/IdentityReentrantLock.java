@@ -0,0 +1,283 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 按id加锁时使用的可重入锁，语义与ReentrantLock一致
+ * 分段模式下作为固定数组的元素，锁状态所在的同步器对象带有填充字段，
+ * 避免相邻分段的同步器落在同一缓存行产生伪共享
+ * （ReentrantLock的状态在其私有的Sync对象中，填充锁对象本身无效，因此自行实现同步器；
+ * StampedLock的状态在锁对象自身，IdentityReadWriteLock直接填充其子类即可）
+ * 精确模式下记录持有及等待该锁的次数，归零时从锁表中回收
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+final class IdentityReentrantLock implements Lock {
+
+    private final Sync sync;
+
+    /** 持有及等待此锁的次数（重入时累加），由锁表同步修改 */
+    int references;
+
+    IdentityReentrantLock(boolean fair) {
+        this.sync = new Sync(fair);
+    }
+
+    @Override
+    public void lock() {
+        sync.acquire(1);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        sync.acquireInterruptibly(1);
+    }
+
+    /**
+     * 与ReentrantLock一致，公平锁也会插队
+     */
+    @Override
+    public boolean tryLock() {
+        return sync.nonfairTryAcquire(1);
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        return sync.tryAcquireNanos(1, unit.toNanos(timeout));
+    }
+
+    @Override
+    public void unlock() {
+        sync.release(1);
+    }
+
+    @Override
+    public Condition newCondition() {
+        return sync.newCondition();
+    }
+
+    public boolean isLocked() {
+        return sync.isLocked();
+    }
+
+    public boolean isHeldByCurrentThread() {
+        return sync.isHeldExclusively();
+    }
+
+    public boolean isFair() {
+        return sync.fair;
+    }
+
+    public int getQueueLength() {
+        return sync.getQueueLength();
+    }
+
+    /**
+     * 加锁，未能立即获取时记录竞争统计
+     */
+    void lock(long id, LockContentionStatistics statistics) {
+        if (tryLockImmediately()) {
+            return;
+        }
+        int queueLength = getQueueLength();
+        long start = System.nanoTime();
+        lock();
+        statistics.record(id, System.nanoTime() - start, queueLength, true);
+    }
+
+    /**
+     * 可中断地加锁，未能立即获取时记录竞争统计
+     */
+    void lockInterruptibly(long id, LockContentionStatistics statistics) throws InterruptedException {
+        if (tryLockImmediately()) {
+            return;
+        }
+        int queueLength = getQueueLength();
+        long start = System.nanoTime();
+        boolean acquired = false;
+        try {
+            lockInterruptibly();
+            acquired = true;
+        } finally {
+            statistics.record(id, System.nanoTime() - start, queueLength, acquired);
+        }
+    }
+
+    /**
+     * 在超时时间内加锁，未能立即获取时记录竞争统计
+     */
+    boolean tryLock(long id, long timeout, TimeUnit unit, LockContentionStatistics statistics)
+            throws InterruptedException {
+        if (tryLockImmediately()) {
+            return true;
+        }
+        int queueLength = getQueueLength();
+        long start = System.nanoTime();
+        boolean acquired = false;
+        try {
+            acquired = tryLock(timeout, unit);
+        } finally {
+            statistics.record(id, System.nanoTime() - start, queueLength, acquired);
+        }
+        return acquired;
+    }
+
+    /**
+     * 公平锁的tryLock()会插队，使用超时为0的tryLock保持公平性
+     */
+    private boolean tryLockImmediately() {
+        if (!isFair()) {
+            return tryLock();
+        }
+        try {
+            return tryLock(0L, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 创建分段锁数组，段数向上取整为2的幂
+     */
+    static IdentityReentrantLock[] newStripes(int stripes, boolean fair) {
+        if (stripes <= 0 || stripes > 1 << 30) {
+            throw new IllegalArgumentException("stripes must be positive and not greater than 2^30");
+        }
+        int length = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        IdentityReentrantLock[] locks = new IdentityReentrantLock[length];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new IdentityReentrantLock(fair);
+        }
+        return locks;
+    }
+
+    /**
+     * 将id打散后映射到2的幂长度的数组下标，避免连续id集中在少数分段
+     */
+    static int stripe(long id, int mask) {
+        return hash(id) & mask;
+    }
+
+    /**
+     * id的哈希值，高位与低位都充分混合，可同时用于选择分段和段内下标
+     */
+    static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 可重入的独占同步器，state为重入次数
+     * 填充字段位于AQS的state之后，使相邻分段的state至少相隔一个缓存行
+     */
+    private static final class Sync extends AbstractQueuedSynchronizer {
+
+        private static final long serialVersionUID = 5493470233722104187L;
+
+        final boolean fair;
+
+        long p1, p2, p3, p4, p5, p6, p7;
+
+        Sync(boolean fair) {
+            this.fair = fair;
+        }
+
+        boolean nonfairTryAcquire(int acquires) {
+            Thread current = Thread.currentThread();
+            int c = getState();
+            if (c == 0) {
+                if (compareAndSetState(0, acquires)) {
+                    setExclusiveOwnerThread(current);
+                    return true;
+                }
+            } else if (current == getExclusiveOwnerThread()) {
+                int next = c + acquires;
+                if (next < 0) {
+                    throw new Error("Maximum lock count exceeded");
+                }
+                setState(next);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected boolean tryAcquire(int acquires) {
+            if (!fair) {
+                return nonfairTryAcquire(acquires);
+            }
+            Thread current = Thread.currentThread();
+            int c = getState();
+            if (c == 0) {
+                if (!hasQueuedPredecessors() && compareAndSetState(0, acquires)) {
+                    setExclusiveOwnerThread(current);
+                    return true;
+                }
+            } else if (current == getExclusiveOwnerThread()) {
+                int next = c + acquires;
+                if (next < 0) {
+                    throw new Error("Maximum lock count exceeded");
+                }
+                setState(next);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected boolean tryRelease(int releases) {
+            if (Thread.currentThread() != getExclusiveOwnerThread()) {
+                throw new IllegalMonitorStateException();
+            }
+            int c = getState() - releases;
+            boolean free = c == 0;
+            if (free) {
+                setExclusiveOwnerThread(null);
+            }
+            setState(c);
+            return free;
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return getExclusiveOwnerThread() == Thread.currentThread();
+        }
+
+        boolean isLocked() {
+            return getState() != 0;
+        }
+
+        ConditionObject newCondition() {
+            return new ConditionObject();
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按id的信号，用于线程间按id交接：await等待信号并将其消费，signal发出信号
+ * 每个id的初始状态为有信号，多次signal不累加；有线程等待时signal直接按先后顺序交给一个等待线程
+ * 只有无信号或有线程等待的id占用表项，信号恢复且无等待线程时自动回收
+ * 表项以long为键存放在分段的开放寻址数组中，无竞争时不分配对象，
+ * 需要等待时才为当前线程创建等待节点，通过park/unpark阻塞和唤醒
+ * int类型的id直接扩展为long使用
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class IdentitySignal {
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    private final Segment[] segments;
+
+    /** 哈希值右移segmentShift位得到分段下标 */
+    private final int segmentShift;
+
+    public IdentitySignal() {
+        int concurrency = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+        int segmentCount = Integer.highestOneBit(concurrency - 1) << 1;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment();
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+    }
+
+    /**
+     * 等待信号并消费，不响应中断（返回时保留中断状态）
+     */
+    public void await(long id) {
+        Waiter waiter = segment(id).awaitOrEnqueue(id);
+        if (waiter == null) {
+            return;
+        }
+        boolean interrupted = false;
+        while (!waiter.granted) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 有信号时立即消费并返回true，否则返回false
+     */
+    public boolean tryAwait(long id) {
+        return segment(id).tryAwait(id);
+    }
+
+    /**
+     * 在超时时间内等待信号并消费，超时返回false
+     */
+    public boolean await(long id, long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        Segment segment = segment(id);
+        Waiter waiter = segment.awaitOrEnqueue(id);
+        if (waiter == null) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!waiter.granted) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L) {
+                return segment.cancel(id, waiter);
+            }
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                if (segment.cancel(id, waiter)) {
+                    // 取消前已获得信号，保留中断状态并返回
+                    Thread.currentThread().interrupt();
+                    return true;
+                }
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 发出信号，有线程等待时交给最先等待的线程，否则恢复为有信号状态
+     */
+    public void signal(long id) {
+        Waiter waiter = segment(id).signal(id);
+        if (waiter != null) {
+            LockSupport.unpark(waiter.thread);
+        }
+    }
+
+    public boolean isSignalled(long id) {
+        return segment(id).isSignalled(id);
+    }
+
+    /**
+     * 清除id的状态使其恢复为初始的有信号状态，有线程等待时不清除（避免等待线程无法被唤醒）
+     *
+     * @return 无线程等待且状态已恢复为有信号时返回true
+     */
+    public boolean clear(long id) {
+        return segment(id).clear(id);
+    }
+
+    /**
+     * 当前无信号或有线程等待的id数量
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private Segment segment(long id) {
+        return segments[IdentityReentrantLock.hash(id) >>> segmentShift];
+    }
+
+    private static final class Waiter {
+
+        final Thread thread;
+
+        volatile boolean granted = false;
+
+        Waiter next;
+
+        Waiter(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * 表中存在的id为无信号状态，heads/tails为其等待队列
+     */
+    private static final class Segment {
+
+        private long[] keys = new long[INITIAL_SEGMENT_CAPACITY];
+
+        private boolean[] used = new boolean[INITIAL_SEGMENT_CAPACITY];
+
+        private Waiter[] heads = new Waiter[INITIAL_SEGMENT_CAPACITY];
+
+        private Waiter[] tails = new Waiter[INITIAL_SEGMENT_CAPACITY];
+
+        private int size = 0;
+
+        /**
+         * 有信号时消费并返回null，否则为当前线程创建等待节点加入队列
+         */
+        synchronized Waiter awaitOrEnqueue(long id) {
+            int index = find(id);
+            if (index < 0) {
+                insert(id);
+                return null;
+            }
+            Waiter waiter = new Waiter(Thread.currentThread());
+            if (tails[index] == null) {
+                heads[index] = waiter;
+            } else {
+                tails[index].next = waiter;
+            }
+            tails[index] = waiter;
+            return waiter;
+        }
+
+        synchronized boolean tryAwait(long id) {
+            if (find(id) >= 0) {
+                return false;
+            }
+            insert(id);
+            return true;
+        }
+
+        /**
+         * 取消等待，取消前已获得信号时返回true
+         */
+        synchronized boolean cancel(long id, Waiter waiter) {
+            if (waiter.granted) {
+                return true;
+            }
+            int index = find(id);
+            Waiter previous = null;
+            for (Waiter current = heads[index]; current != null; current = current.next) {
+                if (current == waiter) {
+                    if (previous == null) {
+                        heads[index] = current.next;
+                    } else {
+                        previous.next = current.next;
+                    }
+                    if (tails[index] == current) {
+                        tails[index] = previous;
+                    }
+                    break;
+                }
+                previous = current;
+            }
+            return false;
+        }
+
+        /**
+         * @return 获得信号需要唤醒的等待节点，没有线程等待时返回null
+         */
+        synchronized Waiter signal(long id) {
+            int index = find(id);
+            if (index < 0) {
+                return null;
+            }
+            Waiter waiter = heads[index];
+            if (waiter == null) {
+                remove(index);
+                return null;
+            }
+            heads[index] = waiter.next;
+            if (heads[index] == null) {
+                tails[index] = null;
+            }
+            waiter.next = null;
+            waiter.granted = true;
+            return waiter;
+        }
+
+        synchronized boolean clear(long id) {
+            int index = find(id);
+            if (index < 0) {
+                return true;
+            }
+            if (heads[index] != null) {
+                return false;
+            }
+            remove(index);
+            return true;
+        }
+
+        synchronized boolean isSignalled(long id) {
+            return find(id) < 0;
+        }
+
+        private int find(long id) {
+            int mask = keys.length - 1;
+            int index = IdentityReentrantLock.hash(id) & mask;
+            while (used[index]) {
+                if (keys[index] == id) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void insert(long id) {
+            int mask = keys.length - 1;
+            int index = IdentityReentrantLock.hash(id) & mask;
+            while (used[index]) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = id;
+            used[index] = true;
+            if (++size > keys.length - (keys.length >>> 2)) {
+                resize(keys.length << 1);
+            }
+        }
+
+        /**
+         * 删除index位置的元素，并将其后探测链上的元素回移
+         */
+        private void remove(int index) {
+            int mask = keys.length - 1;
+            int hole = index;
+            int next = (hole + 1) & mask;
+            while (used[next]) {
+                int home = IdentityReentrantLock.hash(keys[next]) & mask;
+                // home不在(hole, next]区间内时，元素可以回移到hole
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    heads[hole] = heads[next];
+                    tails[hole] = tails[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            used[hole] = false;
+            heads[hole] = null;
+            tails[hole] = null;
+            size--;
+            if (keys.length > INITIAL_SEGMENT_CAPACITY && size < keys.length >>> 3) {
+                resize(keys.length >>> 1);
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            Waiter[] oldHeads = heads;
+            Waiter[] oldTails = tails;
+            keys = new long[capacity];
+            used = new boolean[capacity];
+            heads = new Waiter[capacity];
+            tails = new Waiter[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldUsed.length; i++) {
+                if (oldUsed[i]) {
+                    int index = IdentityReentrantLock.hash(oldKeys[i]) & mask;
+                    while (used[index]) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    used[index] = true;
+                    heads[index] = oldHeads[i];
+                    tails[index] = oldTails[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.concurrent.lock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按id加锁的竞争统计
+ * 只在获取锁未能立即成功时记录，无竞争的加锁路径不产生任何开销
+ * 最多跟踪maxTrackedIds个id的明细，已满时新出现的id替换等待时间估计值最小的id（Space-Saving），
+ * 新id继承被替换id的估计值作为误差上界，持续竞争的id不会因为先出现的id占满而无法被跟踪；
+ * 替换时需遍历所有跟踪的id，只发生在已满且出现新id的竞争路径上
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class LockContentionStatistics {
+
+    private static final int DEFAULT_MAX_TRACKED_IDS = 1024;
+
+    private final int maxTrackedIds;
+
+    private final ConcurrentHashMap<Long, IdContention> contentions = new ConcurrentHashMap<>();
+
+    /** 发生竞争的加锁次数 */
+    private final LongAdder contendedCount = new LongAdder();
+
+    /** 竞争时等待的总时间（纳秒） */
+    private final LongAdder totalWaitTime = new LongAdder();
+
+    /** 超时或被中断未获取到锁的次数 */
+    private final LongAdder timeoutCount = new LongAdder();
+
+    /** 因被替换而丢弃明细的竞争次数 */
+    private final LongAdder untrackedCount = new LongAdder();
+
+    public LockContentionStatistics() {
+        this(DEFAULT_MAX_TRACKED_IDS);
+    }
+
+    public LockContentionStatistics(int maxTrackedIds) {
+        this.maxTrackedIds = maxTrackedIds;
+    }
+
+    /**
+     * 记录一次竞争
+     *
+     * @param waitTime 等待时间（纳秒）
+     * @param queueLength 开始等待时排在前面的线程数
+     * @param acquired 是否获取到锁，为false时表示超时或被中断
+     */
+    void record(long id, long waitTime, int queueLength, boolean acquired) {
+        contendedCount.increment();
+        totalWaitTime.add(waitTime);
+        if (!acquired) {
+            timeoutCount.increment();
+        }
+        IdContention contention = contentions.get(id);
+        if (contention == null) {
+            contention = contentions.size() < maxTrackedIds ? contentions.computeIfAbsent(id, IdContention::new)
+                    : replaceColdest(id);
+        }
+        contention.record(waitTime, queueLength, acquired);
+    }
+
+    /**
+     * 以新id替换估计值最小的id，被替换id的明细计入untrackedCount
+     */
+    private synchronized IdContention replaceColdest(long id) {
+        IdContention contention = contentions.get(id);
+        if (contention != null) {
+            return contention;
+        }
+        IdContention coldest = null;
+        for (IdContention candidate : contentions.values()) {
+            if (coldest == null || candidate.getEstimatedWaitTime() < coldest.getEstimatedWaitTime()) {
+                coldest = candidate;
+            }
+        }
+        long inheritedWaitTime = 0;
+        if (coldest != null && contentions.size() >= maxTrackedIds && contentions.remove(coldest.getId(), coldest)) {
+            untrackedCount.add(coldest.getContendedCount());
+            inheritedWaitTime = coldest.getEstimatedWaitTime();
+        }
+        contention = new IdContention(id, inheritedWaitTime);
+        IdContention previous = contentions.putIfAbsent(id, contention);
+        return previous != null ? previous : contention;
+    }
+
+    public long getContendedCount() {
+        return contendedCount.sum();
+    }
+
+    public long getTotalWaitTime() {
+        return totalWaitTime.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getUntrackedCount() {
+        return untrackedCount.sum();
+    }
+
+    /**
+     * 获取指定id的竞争统计，未发生过竞争或已被替换时返回null
+     */
+    public IdContention getContention(long id) {
+        return contentions.get(id);
+    }
+
+    /**
+     * 按等待总时间的估计值从高到低获取竞争最激烈的id
+     */
+    public List<IdContention> getHotIds(int top) {
+        List<IdContention> hotIds = new ArrayList<>(contentions.values());
+        hotIds.sort((a, b) -> Long.compare(b.getEstimatedWaitTime(), a.getEstimatedWaitTime()));
+        return top < hotIds.size() ? new ArrayList<>(hotIds.subList(0, top)) : hotIds;
+    }
+
+    public void reset() {
+        contentions.clear();
+        contendedCount.reset();
+        totalWaitTime.reset();
+        timeoutCount.reset();
+        untrackedCount.reset();
+    }
+
+    /**
+     * 单个id的竞争统计
+     */
+    public static class IdContention {
+
+        private final long id;
+
+        /** 替换时继承的被替换id的估计值，为本id等待总时间被高估的上界 */
+        private final long inheritedWaitTime;
+
+        private final LongAdder contendedCount = new LongAdder();
+
+        private final LongAdder totalWaitTime = new LongAdder();
+
+        private final LongAdder timeoutCount = new LongAdder();
+
+        private final LongAccumulator maxWaitTime = new LongAccumulator(Math::max, 0L);
+
+        private final LongAccumulator maxQueueLength = new LongAccumulator(Math::max, 0L);
+
+        IdContention(long id) {
+            this(id, 0L);
+        }
+
+        IdContention(long id, long inheritedWaitTime) {
+            this.id = id;
+            this.inheritedWaitTime = inheritedWaitTime;
+        }
+
+        void record(long waitTime, int queueLength, boolean acquired) {
+            contendedCount.increment();
+            totalWaitTime.add(waitTime);
+            if (!acquired) {
+                timeoutCount.increment();
+            }
+            maxWaitTime.accumulate(waitTime);
+            maxQueueLength.accumulate(queueLength);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getContendedCount() {
+            return contendedCount.sum();
+        }
+
+        public long getTotalWaitTime() {
+            return totalWaitTime.sum();
+        }
+
+        public long getTimeoutCount() {
+            return timeoutCount.sum();
+        }
+
+        /**
+         * 等待总时间的估计值，包含替换时继承的部分
+         */
+        public long getEstimatedWaitTime() {
+            return inheritedWaitTime + totalWaitTime.sum();
+        }
+
+        public long getInheritedWaitTime() {
+            return inheritedWaitTime;
+        }
+
+        public long getMaxWaitTime() {
+            return maxWaitTime.get();
+        }
+
+        public long getMaxQueueLength() {
+            return maxQueueLength.get();
+        }
+
+        @Override
+        public String toString() {
+            return "IdContention{id=" + id + ", contendedCount=" + getContendedCount() + ", totalWaitTime="
+                    + getTotalWaitTime() + ", maxWaitTime=" + getMaxWaitTime() + ", maxQueueLength="
+                    + getMaxQueueLength() + ", timeoutCount=" + getTimeoutCount() + ", inheritedWaitTime="
+                    + inheritedWaitTime + "}";
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.logging;
+
+import com.peknight.common.reflect.util.MethodUtils;
+
+/**
+ * 延迟渲染的方法参数，仅在日志真正输出时（Appender格式化消息时）才生成参数字符串
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+final class ArgumentsRenderer {
+
+    private final String[] parameterTypeNames;
+
+    private final String[] parameterNames;
+
+    private final Object[] args;
+
+    private final int maxElements;
+
+    ArgumentsRenderer(String[] parameterTypeNames, String[] parameterNames, Object[] args, int maxElements) {
+        this.parameterTypeNames = parameterTypeNames;
+        this.parameterNames = parameterNames;
+        this.args = args;
+        this.maxElements = maxElements;
+    }
+
+    /**
+     * 参数是否全部为null（此时参数字符串为空），无需渲染即可判断
+     */
+    boolean isEmpty() {
+        for (Object arg : args) {
+            if (arg != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return MethodUtils.argsToString(parameterTypeNames, parameterNames, args, maxElements);
+    }
+}
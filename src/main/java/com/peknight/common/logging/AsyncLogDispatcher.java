@@ -0,0 +1,248 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.logging;
+
+import com.peknight.common.concurrent.BoundedRingBuffer;
+import com.peknight.common.concurrent.CustomizableThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步日志分发器
+ * 业务线程只把LogEvent放入有界无锁环形队列，由后台线程生成日志字符串并调用SLF4J输出，
+ * 使日志格式化与Appender的I/O都不再占用业务线程。队列满时按BackPressurePolicy处理
+ *
+ * 日志的线程名、时间及MDC在入队前记录，使用Logback时输出的是调用线程及调用时间
+ * 参数与返回值默认只保存引用，由后台线程渲染，被丢弃的事件不产生格式化开销；
+ * 参数在调用后会被修改时可开启snapshotArguments，入队前由业务线程渲染为字符串，日志中是调用时的值
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class AsyncLogDispatcher implements AsyncLogDispatcherMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncLogDispatcher.class);
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    /** 队列为空时后台线程每次休眠的时间 */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** BLOCK策略下队列已满时业务线程每次等待的时间 */
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private static final long STOP_TIMEOUT_IN_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final BoundedRingBuffer<LogEvent> buffer;
+
+    private final BackPressurePolicy policy;
+
+    /** DROP_DEBUG_FIRST策略的高水位，队列中事件数达到此值后丢弃新的DEBUG、TRACE事件 */
+    private final int highWaterMark;
+
+    /** 是否在入队前由业务线程将参数及返回值渲染为字符串 */
+    private final boolean snapshotArguments;
+
+    private final LongAdder writtenCount = new LongAdder();
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final LongAdder blockedCount = new LongAdder();
+
+    private final Thread consumer;
+
+    private volatile boolean running = false;
+
+    public AsyncLogDispatcher() {
+        this(DEFAULT_CAPACITY, BackPressurePolicy.DROP_DEBUG_FIRST);
+    }
+
+    /**
+     * @param capacity 队列容量，会向上取整为2的幂
+     */
+    public AsyncLogDispatcher(int capacity, BackPressurePolicy policy) {
+        this(capacity, policy, false);
+    }
+
+    /**
+     * @param capacity 队列容量，会向上取整为2的幂
+     * @param snapshotArguments 是否在入队前由业务线程将参数及返回值渲染为字符串，
+     *                          参数在调用后会被修改时开启，代价是格式化重新回到业务线程
+     */
+    public AsyncLogDispatcher(int capacity, BackPressurePolicy policy, boolean snapshotArguments) {
+        this.snapshotArguments = snapshotArguments;
+        this.buffer = new BoundedRingBuffer<>(capacity);
+        this.policy = policy;
+        this.highWaterMark = buffer.capacity() - buffer.capacity() / 4;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("CommonLogAsync");
+        threadFactory.setDaemon(true);
+        this.consumer = threadFactory.newThread(this::consume);
+    }
+
+    public synchronized void start() {
+        if (!running && consumer.getState() == Thread.State.NEW) {
+            running = true;
+            consumer.start();
+        }
+    }
+
+    /**
+     * 停止后台线程，停止前会输出队列中剩余的事件，停止后的事件直接在调用线程同步输出
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(STOP_TIMEOUT_IN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 分发日志事件，未启动或已停止时同步输出
+     */
+    void dispatch(LogEvent event) {
+        if (!running) {
+            event.write();
+            return;
+        }
+        switch (policy) {
+            case BLOCK:
+                event.capture(snapshotArguments);
+                if (!buffer.offer(event)) {
+                    blockedCount.increment();
+                    while (!buffer.offer(event)) {
+                        if (!running) {
+                            event.write();
+                            return;
+                        }
+                        LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                    }
+                }
+                break;
+            case DROP_DEBUG_FIRST:
+                if (event.getLevel().toInt() <= Level.DEBUG.toInt() && buffer.size() >= highWaterMark) {
+                    droppedCount.increment();
+                    return;
+                }
+                event.capture(snapshotArguments);
+                offerDropOldest(event);
+                break;
+            case DROP_OLDEST:
+            default:
+                event.capture(snapshotArguments);
+                offerDropOldest(event);
+                break;
+        }
+        // 入队后分发器恰好停止时，由当前线程输出剩余事件，避免事件滞留在队列中
+        if (!running) {
+            drain();
+        }
+    }
+
+    private void offerDropOldest(LogEvent event) {
+        while (!buffer.offer(event)) {
+            if (buffer.poll() != null) {
+                droppedCount.increment();
+            }
+        }
+    }
+
+    private void consume() {
+        while (running) {
+            LogEvent event = buffer.poll();
+            if (event == null) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            } else {
+                write(event);
+            }
+        }
+        drain();
+    }
+
+    private void drain() {
+        LogEvent event;
+        while ((event = buffer.poll()) != null) {
+            write(event);
+        }
+    }
+
+    private void write(LogEvent event) {
+        try {
+            event.write();
+            writtenCount.increment();
+        } catch (Throwable t) {
+            LOGGER.error("Write Log Event Failed: {}", t.toString(), t);
+        }
+    }
+
+    @Override
+    public String getPolicy() {
+        return policy.name();
+    }
+
+    @Override
+    public boolean isSnapshotArguments() {
+        return snapshotArguments;
+    }
+
+    @Override
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return buffer.size();
+    }
+
+    @Override
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    @Override
+    public long getBlockedCount() {
+        return blockedCount.sum();
+    }
+}
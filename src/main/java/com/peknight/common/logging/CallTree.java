@@ -0,0 +1,75 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.logging;
+
+/**
+ * 最外层@CommonLog方法结束时生成的调用树快照，节点按调用顺序（先序）排列，toString()时才渲染
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+final class CallTree {
+
+    private final InterceptionPlan[] plans;
+
+    private final int[] depths;
+
+    private final long[] totalTimes;
+
+    private final long[] childTimes;
+
+    /** 超出最大节点数未记录的节点数 */
+    private final int droppedNodeCount;
+
+    CallTree(InterceptionPlan[] plans, int[] depths, long[] totalTimes, long[] childTimes,
+             int droppedNodeCount) {
+        this.plans = plans;
+        this.depths = depths;
+        this.totalTimes = totalTimes;
+        this.childTimes = childTimes;
+        this.droppedNodeCount = droppedNodeCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < plans.length; i++) {
+            builder.append('\n');
+            for (int j = 0; j < depths[i]; j++) {
+                builder.append("    ");
+            }
+            MethodStatistics statistics = plans[i].getStatistics();
+            builder.append(statistics.getMethod().getDeclaringClass().getSimpleName()).append('.')
+                    .append(statistics.getMethodName())
+                    .append(" [Time: ").append(LogEvent.timeFormat(totalTimes[i]))
+                    .append(", Self: ").append(LogEvent.timeFormat(totalTimes[i] - childTimes[i]))
+                    .append(", Children: ").append(LogEvent.timeFormat(childTimes[i])).append(']');
+        }
+        if (droppedNodeCount > 0) {
+            builder.append("\n... ").append(droppedNodeCount).append(" more calls");
+        }
+        return builder.toString();
+    }
+}
@@ -45,4 +45,35 @@ public @interface CommonLog {
 
     Level value() default Level.DEBUG;
 
+    /**
+     * 数组、Collection、Map类型的参数及返回值最多输出的元素个数，小于0时不截断
+     */
+    int maxElements() default -1;
+
+    /**
+     * 采样率，平均每sampleRate次调用输出一次Begin/End日志（随机采样），抛出异常、返回错误结果及慢调用总是输出
+     */
+    int sampleRate() default 1;
+
+    /**
+     * 每秒最多输出Begin/End日志的调用次数，小于等于0时不限制，抛出异常、返回错误结果及慢调用不受此限制
+     */
+    int maxLogsPerSecond() default -1;
+
+    /**
+     * 慢调用阈值（毫秒），执行时间超过此值时日志升级为WARN输出，小于等于0时不启用
+     */
+    long slowThresholdMillis() default -1;
+
+    /**
+     * 自适应慢调用阈值，执行时间超过此方法最近p99的slowP99Multiple倍时日志升级为WARN输出，小于等于0时不启用
+     */
+    double slowP99Multiple() default -1;
+
+    /**
+     * 作为最外层@CommonLog方法执行结束时，额外输出一条汇总的调用树日志（各嵌套方法的执行时间、自身时间及子方法时间）
+     * 需通过CommonLogAspect.setTraceEnabled(true)开启调用链追踪
+     */
+    boolean callTree() default false;
+
 }
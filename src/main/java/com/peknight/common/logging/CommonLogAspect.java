@@ -23,19 +23,21 @@
  */
 package com.peknight.common.logging;
 
-import com.peknight.common.reflect.util.MethodUtils;
+import com.peknight.common.metrics.MetricsRegistry;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.core.annotation.Order;
 
+import javax.management.ObjectName;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * 日志切面，通过拦截@CommonLog注解，打印被拦截方法的信息
@@ -50,15 +52,33 @@ import java.util.concurrent.atomic.AtomicLongArray;
  */
 @Order(0)
 @Aspect
-public class CommonLogAspect {
+public class CommonLogAspect implements DisposableBean {
 
     /**
-     * 为每个方法执行计数计时的Map，使用ConcurrentHashMap保证线程安全
-     * Key为Method对应计数计时的方法，AtomicLongArray为一个长度为2的long型原子数组（保证线程安全）
-     * 数据第一个元素表示此方法执行的总时间，第二个元素表示此方法执行的总次数，相除即为平均执行时间
-     * 第三个元素用于记录当前是第几次执行（不同于第二个元素，第二个元素用于计算平均时间直接使用会有计算不准确的问题）
+     * 为每个方法缓存拦截计划的Map，使用ConcurrentHashMap保证线程安全
+     * Key为被拦截的Method，InterceptionPlan中包含Logger、日志级别、返回值类型、参数信息、日志格式及执行统计
      */
-    private static final Map<Method, AtomicLongArray> EXECUTE_TIME = new ConcurrentHashMap<>();
+    private static final Map<Method, InterceptionPlan> INTERCEPTION_PLANS = new ConcurrentHashMap<>();
+
+    /**
+     * 同一方法以不同的日志级别或注解拦截时（如同时通过注解及commonLog(pjp, logger, level)调用），
+     * 第一个计划之外的计划按方法、日志级别及注解缓存在此Map中
+     */
+    private static final Map<PlanKey, InterceptionPlan> VARIANT_PLANS = new ConcurrentHashMap<>();
+
+    /**
+     * 执行统计注册到MetricsRegistry时使用的ObjectName，
+     * 如com.peknight.common.logging:type=CommonLog,class=com.example.FooService,method=foo(int),level=DEBUG
+     */
+    private static final String MBEAN_DOMAIN = "com.peknight.common.logging";
+    private static final String MBEAN_TYPE = "CommonLog";
+    private static final String ASYNC_DISPATCHER_MBEAN_TYPE = "CommonLogAsyncDispatcher";
+
+    /** 是否开启调用链追踪，开启后日志附带traceId、spanId及parentId，并支持输出调用树 */
+    private static volatile boolean traceEnabled = false;
+
+    /** 异步日志分发器，为null时在业务线程同步输出日志 */
+    private static volatile AsyncLogDispatcher asyncLogDispatcher;
 
     /**
      * 拦截类上或方法注解@CommonLog的所有方法
@@ -66,12 +86,12 @@ public class CommonLogAspect {
     @Around("@annotation(commonLog)")
     public Object methodCommonLog(ProceedingJoinPoint proceedingJoinPoint, CommonLog commonLog)
             throws Throwable {
-        Method method = ((MethodSignature) proceedingJoinPoint.getSignature()).getMethod();
-        Class<?> declaringClass = method.getDeclaringClass();
-        // 获取Method的类的Logger
-        Logger logger = LoggerFactory.getLogger(declaringClass);
-        Level level = commonLog.value();
-        return commonLog(proceedingJoinPoint, logger, level);
+        MethodSignature methodSignature = (MethodSignature) proceedingJoinPoint.getSignature();
+        InterceptionPlan plan = INTERCEPTION_PLANS.get(methodSignature.getMethod());
+        if (plan == null || !plan.matches(commonLog.value(), commonLog)) {
+            plan = getInterceptionPlan(methodSignature, commonLog.value(), commonLog);
+        }
+        return commonLog(proceedingJoinPoint, plan, plan.getLogger(), plan.getLevel());
     }
 
     @Around("!@annotation(com.peknight.common.logging.CommonLog) && @within(commonLog)")
@@ -85,108 +105,192 @@ public class CommonLogAspect {
      */
     public static Object commonLog(ProceedingJoinPoint proceedingJoinPoint, Logger logger, Level level) throws Throwable {
         MethodSignature methodSignature = (MethodSignature) proceedingJoinPoint.getSignature();
-        Method method = methodSignature.getMethod();
+        InterceptionPlan plan = INTERCEPTION_PLANS.get(methodSignature.getMethod());
+        if (plan == null || !plan.matches(level, null)) {
+            plan = getInterceptionPlan(methodSignature, level, null);
+        }
+        return commonLog(proceedingJoinPoint, plan, logger, level);
+    }
+
+    private static Object commonLog(ProceedingJoinPoint proceedingJoinPoint, InterceptionPlan plan,
+                                    Logger logger, Level level) throws Throwable {
         Object[] args = proceedingJoinPoint.getArgs();
-        EXECUTE_TIME.putIfAbsent(method, new AtomicLongArray(3));
-        AtomicLongArray executeTime = EXECUTE_TIME.get(method);
-        long index = executeTime.incrementAndGet(2);
-        String methodInfo = String.format("%s%s%d%s", method.getName(), "[", index, "]");
-        if (isLoggingLevelEnable(logger, level)) {
-            preLogger(logger, level, methodInfo, MethodUtils.argsToString(methodSignature, args));
-        }
-        String returnType = MethodUtils.getReturnTypeSimpleName(method);
-        long taskTime;
+        MethodStatistics statistics = plan.getStatistics();
+        statistics.begin();
+        long index = 0;
+        // 未被采样或被限流的调用不输出Begin/End日志，但抛出异常及返回错误结果时仍然输出
+        boolean logged = isLoggingLevelEnable(logger, level) && plan.isSampled();
+        TraceContext traceContext = traceEnabled ? TraceContext.current() : null;
+        TraceContext.Frame frame = traceContext == null ? null
+                : traceContext.push(plan, plan.isCallTree() && isLoggingLevelEnable(logger, level));
+        if (logged) {
+            index = statistics.index();
+            dispatch(LogEvent.begin(plan, logger, level, index, frame, args));
+        }
+        long taskTime = 0;
         long start = System.nanoTime();
         try {
             Object object = proceedingJoinPoint.proceed();
             taskTime = System.nanoTime() - start;
-            if (object != null && object instanceof CommonResult && ((CommonResult) object).getCode() != 0
-                    && level.toInt() < Level.WARN.toInt()) {
-                if (!isLoggingLevelEnable(logger, level) && isLoggingLevelEnable(logger, Level.WARN)) {
-                    preLogger(logger, Level.WARN, methodInfo, MethodUtils.argsToString(methodSignature, args));
+            // 返回错误结果或慢调用时日志升级为WARN，此时才输出参数
+            boolean slow = plan.isSlow(taskTime);
+            if (slow || (object instanceof CommonResult && ((CommonResult) object).getCode() != 0)) {
+                if (level.toInt() < Level.WARN.toInt()) {
+                    level = Level.WARN;
+                }
+                if (!logged && isLoggingLevelEnable(logger, level)) {
+                    index = statistics.index();
+                    dispatch(LogEvent.begin(plan, logger, level, index, frame, args));
+                    logged = true;
                 }
-                level = Level.WARN;
             }
-            postLogger(logger, level, methodInfo, timeFormat(taskTime),
-                    timeFormat(executeTime.addAndGet(0, taskTime) / executeTime.incrementAndGet(1)),
-                    returnType, object);
+            statistics.end(taskTime);
+            if (logged) {
+                dispatch(LogEvent.end(plan, logger, level, index, taskTime, frame, slow, object));
+            }
             return object;
         } catch (Throwable e) {
             taskTime = System.nanoTime() - start;
-            if (!isLoggingLevelEnable(logger, level) && isLoggingLevelEnable(logger, Level.ERROR)) {
-                preLogger(logger, Level.ERROR, methodInfo, MethodUtils.argsToString(methodSignature, args));
+            statistics.error();
+            statistics.end(taskTime);
+            if (logger.isErrorEnabled()) {
+                if (!logged) {
+                    index = statistics.index();
+                    dispatch(LogEvent.begin(plan, logger, Level.ERROR, index, frame, args));
+                    logged = true;
+                }
+                dispatch(LogEvent.error(plan, logger, index, taskTime, frame, e));
             }
-            postErrorLogger(logger, methodInfo, timeFormat(taskTime),
-                    timeFormat(executeTime.addAndGet(0, taskTime) / executeTime.incrementAndGet(1)),
-                    returnType, e);
             throw e;
+        } finally {
+            if (frame != null) {
+                // 最外层方法结束时输出调用树
+                CallTree callTree = traceContext.pop(frame, taskTime);
+                if (callTree != null) {
+                    dispatch(LogEvent.tree(plan, logger, level, logged ? index : statistics.index(), frame,
+                            callTree));
+                }
+            }
         }
     }
 
     /**
-     * 打印方法执行前相应级别的日志
+     * 输出日志事件，设置了异步日志分发器时交由后台线程输出
      */
-    private static void preLogger(Logger logger, Level level, String methodInfo, String argsInfo) {
-        String loggerFormat = argsInfo.length() == 0 ? "[Begin] {}" : "[Begin] {} Args: [{}]";
-        switch (level) {
-            case TRACE:
-                logger.trace(loggerFormat, methodInfo, argsInfo);
-                return;
-            case DEBUG:
-                logger.debug(loggerFormat, methodInfo, argsInfo);
-                return;
-            case INFO:
-                logger.info(loggerFormat, methodInfo, argsInfo);
-                return;
-            case WARN:
-                logger.warn(loggerFormat, methodInfo, argsInfo);
-                return;
-            case ERROR:
-                logger.error(loggerFormat, methodInfo, argsInfo);
-                return;
-            default:
-                return;
+    private static void dispatch(LogEvent event) {
+        AsyncLogDispatcher dispatcher = asyncLogDispatcher;
+        if (dispatcher == null) {
+            event.write();
+        } else {
+            dispatcher.dispatch(event);
         }
     }
 
     /**
-     * 打印方法执行后相应级别的日志
+     * 设置异步日志分发器并启动，之前设置的分发器会被停止（停止前输出其队列中剩余的日志），设置为null时恢复同步输出
      */
-    private static void postLogger(Logger logger, Level level, String methodInfo,
-                                   String time, String avgTime, String returnType, Object returnObj) {
-        String loggerFormat = "void".equals(returnType) ?
-                "[  End] {} [Time: {}, AvgTime: {}]" :
-                "[  End] {} [Time: {}, AvgTime: {}] Return: ({}) {}";
-        switch (level) {
-            case TRACE:
-                logger.trace(loggerFormat, methodInfo, time, avgTime, returnType, returnObj);
-                return;
-            case DEBUG:
-                logger.debug(loggerFormat, methodInfo, time, avgTime, returnType, returnObj);
-                return;
-            case INFO:
-                logger.info(loggerFormat, methodInfo, time, avgTime, returnType, returnObj);
-                return;
-            case WARN:
-                logger.warn(loggerFormat, methodInfo, time, avgTime, returnType, returnObj);
-                return;
-            case ERROR:
-                logger.error(loggerFormat, methodInfo, time, avgTime, returnType, returnObj);
-                return;
-            default:
-                return;
+    public static synchronized void setAsyncLogDispatcher(AsyncLogDispatcher dispatcher) {
+        AsyncLogDispatcher previous = asyncLogDispatcher;
+        ObjectName name = MetricsRegistry.objectName(MBEAN_DOMAIN, ASYNC_DISPATCHER_MBEAN_TYPE);
+        if (dispatcher != null) {
+            dispatcher.start();
+        }
+        asyncLogDispatcher = dispatcher;
+        if (previous != null && previous != dispatcher) {
+            MetricsRegistry.unregister(name);
+            previous.stop();
+        }
+        if (dispatcher != null) {
+            MetricsRegistry.register(name, dispatcher, AsyncLogDispatcherMXBean.class);
+        }
+    }
+
+    public static AsyncLogDispatcher getAsyncLogDispatcher() {
+        return asyncLogDispatcher;
+    }
+
+    /**
+     * 开启或关闭调用链追踪，开启后嵌套的@CommonLog方法共享traceId，日志中附带traceId、spanId及parentId
+     */
+    public static void setTraceEnabled(boolean enabled) {
+        traceEnabled = enabled;
+    }
+
+    public static boolean isTraceEnabled() {
+        return traceEnabled;
+    }
+
+    /**
+     * Spring容器关闭时停止异步日志分发器，输出队列中剩余的日志
+     */
+    @Override
+    public void destroy() {
+        setAsyncLogDispatcher(null);
+    }
+
+    /**
+     * 获取方法在指定日志级别及注解下的拦截计划，首次拦截时生成
+     */
+    private static InterceptionPlan getInterceptionPlan(MethodSignature methodSignature, Level level,
+                                                        CommonLog commonLog) {
+        Method method = methodSignature.getMethod();
+        InterceptionPlan existing = INTERCEPTION_PLANS.get(method);
+        if (existing == null) {
+            InterceptionPlan plan = new InterceptionPlan(methodSignature, level, commonLog);
+            existing = INTERCEPTION_PLANS.putIfAbsent(method, plan);
+            if (existing == null) {
+                register(plan, null);
+                return plan;
+            }
+        }
+        if (existing.matches(level, commonLog)) {
+            return existing;
         }
+        PlanKey key = new PlanKey(method, level, commonLog);
+        InterceptionPlan variant = VARIANT_PLANS.get(key);
+        if (variant != null) {
+            return variant;
+        }
+        InterceptionPlan plan = new InterceptionPlan(methodSignature, level, commonLog);
+        variant = VARIANT_PLANS.putIfAbsent(key, plan);
+        if (variant != null) {
+            return variant;
+        }
+        // 与第一个计划的日志级别相同时ObjectName会重复，以来源区分
+        register(plan, commonLog == null ? "api" : "annotation");
+        return plan;
+    }
+
+    private static void register(InterceptionPlan plan, String source) {
+        MethodStatistics statistics = plan.getStatistics();
+        ObjectName name = source == null
+                ? MetricsRegistry.objectName(MBEAN_DOMAIN, MBEAN_TYPE, "class", statistics.getClassName(),
+                        "method", statistics.getMethodName(), "level", statistics.getLevel())
+                : MetricsRegistry.objectName(MBEAN_DOMAIN, MBEAN_TYPE, "class", statistics.getClassName(),
+                        "method", statistics.getMethodName(), "level", statistics.getLevel(), "source", source);
+        MetricsRegistry.register(name, statistics, MethodStatisticsMXBean.class);
     }
 
     /**
-     * 打印异常日志
+     * 获取方法的执行统计（第一次拦截时的日志级别及注解），方法未被拦截过时返回null
      */
-    private static void postErrorLogger(Logger logger, String methodInfo,
-                                        String time, String avgTime, String returnType, Throwable e) {
-        String loggerFormat = "void".equals(returnType) ?
-                "[Error] {} [Time: {}, AvgTime: {}] ExceptionMessage: {}" :
-                "[Error] {} [Time: {}, AvgTime: {}] [ReturnType: {}] Error: {}";
-        logger.error(loggerFormat, methodInfo, time, avgTime, returnType, e.toString(), e);
+    public static MethodStatistics getStatistics(Method method) {
+        InterceptionPlan plan = INTERCEPTION_PLANS.get(method);
+        return plan == null ? null : plan.getStatistics();
+    }
+
+    /**
+     * 获取所有被拦截过的方法的执行统计，同一方法以不同日志级别或注解拦截时各有一份
+     */
+    public static List<MethodStatistics> getAllStatistics() {
+        List<MethodStatistics> statisticsList = new ArrayList<>(INTERCEPTION_PLANS.size() + VARIANT_PLANS.size());
+        for (InterceptionPlan plan : INTERCEPTION_PLANS.values()) {
+            statisticsList.add(plan.getStatistics());
+        }
+        for (InterceptionPlan plan : VARIANT_PLANS.values()) {
+            statisticsList.add(plan.getStatistics());
+        }
+        return statisticsList;
     }
 
     /**
@@ -209,16 +313,38 @@ public class CommonLogAspect {
         }
     }
 
-    private static String timeFormat(long nanoTime) {
-        if (nanoTime >= 10L * 1000 * 1000 * 1000) {
-            return nanoTime / (1000 * 1000 * 1000) + "s";
-        } else if (nanoTime >= 10 * 1000 * 1000) {
-            return nanoTime / (1000 * 1000) + "ms";
-        } else if (nanoTime >= 10 * 1000) {
-            return nanoTime / 1000 + "us";
-        } else {
-            return nanoTime + "ns";
+    /**
+     * VARIANT_PLANS的键，注解按引用比较
+     */
+    private static final class PlanKey {
+
+        private final Method method;
+
+        private final Level level;
+
+        private final CommonLog commonLog;
+
+        PlanKey(Method method, Level level, CommonLog commonLog) {
+            this.method = method;
+            this.level = level;
+            this.commonLog = commonLog;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey other = (PlanKey) o;
+            return method.equals(other.method) && level == other.level && commonLog == other.commonLog;
+        }
+
+        @Override
+        public int hashCode() {
+            return (method.hashCode() * 31 + level.hashCode()) * 31 + System.identityHashCode(commonLog);
         }
     }
 }
-
@@ -0,0 +1,206 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.logging;
+
+import com.peknight.common.concurrent.TokenBucket;
+import com.peknight.common.reflect.util.MethodUtils;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 被@CommonLog拦截方法的拦截计划
+ * 首次拦截时根据Method生成，之后的每次调用直接复用，避免重复获取Logger、反射解析返回值类型和参数信息
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+final class InterceptionPlan {
+
+    private static final String POST_FORMAT_VOID = "[  End] {} [Time: {}, AvgTime: {}]";
+    private static final String POST_FORMAT = "[  End] {} [Time: {}, AvgTime: {}] Return: ({}) {}";
+    private static final String SLOW_FORMAT_VOID = "[ Slow] {} [Time: {}, AvgTime: {}]";
+    private static final String SLOW_FORMAT = "[ Slow] {} [Time: {}, AvgTime: {}] Return: ({}) {}";
+    private static final String ERROR_FORMAT_VOID = "[Error] {} [Time: {}, AvgTime: {}] ExceptionMessage: {}";
+    private static final String ERROR_FORMAT = "[Error] {} [Time: {}, AvgTime: {}] [ReturnType: {}] Error: {}";
+
+    private final String methodName;
+
+    private final Logger logger;
+
+    private final Level level;
+
+    private final String returnType;
+
+    /** 参数类型简称，方法签名中取不到时为null，此时使用参数值的实际类型 */
+    private final String[] parameterTypeNames;
+
+    private final String[] parameterNames;
+
+    private final String postFormat;
+
+    private final String slowFormat;
+
+    private final String errorFormat;
+
+    /** 数组、Collection、Map最多输出的元素个数，小于0时不截断 */
+    private final int maxElements;
+
+    /** 采样率，平均每sampleRate次调用输出一次日志 */
+    private final int sampleRate;
+
+    /** 日志限流令牌桶，不限流时为null */
+    private final TokenBucket logRateLimiter;
+
+    /** 慢调用检测，未启用时为null */
+    private final SlowCallDetector slowCallDetector;
+
+    /** 作为最外层方法时是否输出调用树 */
+    private final boolean callTree;
+
+    private final MethodStatistics statistics;
+
+    /** 生成计划时使用的注解，用于判断缓存的计划是否适用 */
+    private final CommonLog commonLog;
+
+    /**
+     * @param commonLog 方法或类上的@CommonLog注解，为null时使用注解的默认配置
+     */
+    InterceptionPlan(MethodSignature methodSignature, Level level, CommonLog commonLog) {
+        Method method = methodSignature.getMethod();
+        this.methodName = method.getName();
+        this.logger = LoggerFactory.getLogger(method.getDeclaringClass());
+        this.level = level;
+        this.returnType = MethodUtils.getReturnTypeSimpleName(method);
+        Class<?>[] parameterTypes = methodSignature.getParameterTypes();
+        if (parameterTypes == null) {
+            this.parameterTypeNames = null;
+        } else {
+            this.parameterTypeNames = new String[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                this.parameterTypeNames[i] = parameterTypes[i].getSimpleName();
+            }
+        }
+        this.parameterNames = methodSignature.getParameterNames();
+        boolean isVoid = "void".equals(returnType);
+        this.postFormat = isVoid ? POST_FORMAT_VOID : POST_FORMAT;
+        this.slowFormat = isVoid ? SLOW_FORMAT_VOID : SLOW_FORMAT;
+        this.errorFormat = isVoid ? ERROR_FORMAT_VOID : ERROR_FORMAT;
+        this.maxElements = commonLog == null ? -1 : commonLog.maxElements();
+        this.sampleRate = commonLog == null ? 1 : Math.max(1, commonLog.sampleRate());
+        int maxLogsPerSecond = commonLog == null ? -1 : commonLog.maxLogsPerSecond();
+        this.logRateLimiter = maxLogsPerSecond > 0 ? new TokenBucket(maxLogsPerSecond) : null;
+        this.callTree = commonLog != null && commonLog.callTree();
+        this.statistics = new MethodStatistics(method, level);
+        this.slowCallDetector = SlowCallDetector.create(commonLog, statistics);
+        this.commonLog = commonLog;
+    }
+
+    /**
+     * 是否由相同的日志级别及注解生成，注解按引用比较（同一方法或类上的注解实例由JDK缓存，不会变化）
+     */
+    boolean matches(Level level, CommonLog commonLog) {
+        return this.level == level && this.commonLog == commonLog;
+    }
+
+    Logger getLogger() {
+        return logger;
+    }
+
+    Level getLevel() {
+        return level;
+    }
+
+    String getReturnType() {
+        return returnType;
+    }
+
+    String getPostFormat() {
+        return postFormat;
+    }
+
+    String getSlowFormat() {
+        return slowFormat;
+    }
+
+    String getErrorFormat() {
+        return errorFormat;
+    }
+
+    boolean isCallTree() {
+        return callTree;
+    }
+
+    MethodStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * 本次调用是否输出Begin/End日志，先按采样率随机过滤（不依赖共享计数器），再按每秒最大日志数限流
+     */
+    boolean isSampled() {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return false;
+        }
+        return logRateLimiter == null || logRateLimiter.tryAcquire();
+    }
+
+    /**
+     * 判断是否为慢调用，未启用慢调用检测时总是返回false
+     */
+    boolean isSlow(long taskTime) {
+        if (slowCallDetector != null && slowCallDetector.isSlow(taskTime)) {
+            statistics.slow();
+            return true;
+        }
+        return false;
+    }
+
+    String methodInfo(long index) {
+        return methodName + "[" + index + "]";
+    }
+
+    /**
+     * 开启调用链追踪时在方法信息后附加traceId、spanId及parentId，traceId为0时与methodInfo(index)相同
+     */
+    String methodInfo(long index, long traceId, long spanId, long parentId) {
+        if (traceId == 0) {
+            return methodInfo(index);
+        }
+        return methodName + "[" + index + "]{Trace: " + LogEvent.idFormat(traceId) + ", Span: "
+                + LogEvent.idFormat(spanId) + ", Parent: " + LogEvent.idFormat(parentId) + "}";
+    }
+
+    ArgumentsRenderer renderArgs(Object[] args) {
+        return new ArgumentsRenderer(parameterTypeNames, parameterNames, args, maxElements);
+    }
+
+    ValueRenderer renderValue(Object value) {
+        return new ValueRenderer(value, maxElements);
+    }
+}
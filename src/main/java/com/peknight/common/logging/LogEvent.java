@@ -0,0 +1,276 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+
+import java.util.Map;
+
+/**
+ * @CommonLog的日志事件，只保存调用时的原始数据，方法信息、执行时间、参数及返回值等字符串在write()时才生成
+ * 同步输出时在业务线程直接write()，异步输出时由AsyncLogDispatcher的后台线程write()
+ * 异步输出时入队前先在业务线程中capture()：记录调用线程名、时间及MDC，输出时使用这些值而不是后台线程的；
+ * 参数及返回值默认保存引用由后台线程渲染，分发器开启快照时才在业务线程渲染为字符串（适用于参数在调用后会被修改的场景）
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+final class LogEvent {
+
+    private static final String BEGIN_FORMAT = "[Begin] {}";
+    private static final String BEGIN_ARGS_FORMAT = "[Begin] {} Args: [{}]";
+    private static final String TREE_FORMAT = "[ Tree] {}{}";
+    private static final String ID_PADDING = "0000000000000000";
+
+    private static final boolean LOGBACK_AVAILABLE = isClassPresent("ch.qos.logback.classic.Logger");
+
+    enum Type {
+        BEGIN, END, SLOW, ERROR, TREE
+    }
+
+    private final Type type;
+
+    private final InterceptionPlan plan;
+
+    private final Logger logger;
+
+    private final Level level;
+
+    /** 日志序号，同一方法输出日志的调用依次编号，未输出日志（级别关闭或未被采样）的调用不占用序号 */
+    private final long index;
+
+    private final long taskTime;
+
+    /** 调用链id，未开启调用链追踪时均为0 */
+    private final long traceId;
+
+    private final long spanId;
+
+    private final long parentId;
+
+    private Object[] args;
+
+    private Object value;
+
+    private final Throwable error;
+
+    /** 以下字段在capture()时设置，同步输出时threadName为null，argsInfo只在快照时设置 */
+    private String threadName;
+
+    private long timeStamp;
+
+    private Map<String, String> mdc;
+
+    /** 渲染后的参数字符串，参数全部为null时为null */
+    private String argsInfo;
+
+    /** 参数及返回值是否已渲染为字符串 */
+    private boolean rendered;
+
+    private LogEvent(Type type, InterceptionPlan plan, Logger logger, Level level, long index, long taskTime,
+                     TraceContext.Frame frame, Object[] args, Object value, Throwable error) {
+        this.type = type;
+        this.plan = plan;
+        this.logger = logger;
+        this.level = level;
+        this.index = index;
+        this.taskTime = taskTime;
+        // 栈帧按线程复用，需在创建事件时复制id
+        this.traceId = frame == null ? 0 : frame.traceId;
+        this.spanId = frame == null ? 0 : frame.spanId;
+        this.parentId = frame == null ? 0 : frame.parentId;
+        this.args = args;
+        this.value = value;
+        this.error = error;
+    }
+
+    static LogEvent begin(InterceptionPlan plan, Logger logger, Level level, long index, TraceContext.Frame frame,
+                          Object[] args) {
+        return new LogEvent(Type.BEGIN, plan, logger, level, index, 0, frame, args, null, null);
+    }
+
+    static LogEvent end(InterceptionPlan plan, Logger logger, Level level, long index, long taskTime,
+                        TraceContext.Frame frame, boolean slow, Object value) {
+        return new LogEvent(slow ? Type.SLOW : Type.END, plan, logger, level, index, taskTime, frame, null, value,
+                null);
+    }
+
+    static LogEvent error(InterceptionPlan plan, Logger logger, long index, long taskTime, TraceContext.Frame frame,
+                          Throwable error) {
+        return new LogEvent(Type.ERROR, plan, logger, Level.ERROR, index, taskTime, frame, null, null, error);
+    }
+
+    static LogEvent tree(InterceptionPlan plan, Logger logger, Level level, long index, TraceContext.Frame frame,
+                         CallTree callTree) {
+        return new LogEvent(Type.TREE, plan, logger, level, index, 0, frame, null, callTree, null);
+    }
+
+    Level getLevel() {
+        return level;
+    }
+
+    /**
+     * 在业务线程中记录线程名、时间及MDC，入队异步输出前调用
+     *
+     * @param snapshot 是否同时将参数及返回值渲染为字符串
+     */
+    void capture(boolean snapshot) {
+        threadName = Thread.currentThread().getName();
+        timeStamp = System.currentTimeMillis();
+        mdc = MDC.getCopyOfContextMap();
+        if (!snapshot) {
+            return;
+        }
+        rendered = true;
+        if (type == Type.BEGIN) {
+            ArgumentsRenderer renderer = plan.renderArgs(args);
+            argsInfo = renderer.isEmpty() ? null : renderer.toString();
+            args = null;
+        } else if (type == Type.END || type == Type.SLOW) {
+            value = plan.renderValue(value).toString();
+        }
+    }
+
+    /**
+     * 生成日志内容并输出
+     */
+    void write() {
+        String methodInfo = plan.methodInfo(index, traceId, spanId, parentId);
+        switch (type) {
+            case BEGIN:
+                Object argsInfo = this.argsInfo;
+                if (!rendered) {
+                    ArgumentsRenderer renderer = plan.renderArgs(args);
+                    argsInfo = renderer.isEmpty() ? null : renderer;
+                }
+                if (argsInfo == null) {
+                    emit(level, BEGIN_FORMAT, methodInfo);
+                } else {
+                    emit(level, BEGIN_ARGS_FORMAT, methodInfo, argsInfo);
+                }
+                return;
+            case END:
+            case SLOW:
+                emit(level, type == Type.SLOW ? plan.getSlowFormat() : plan.getPostFormat(), methodInfo,
+                        timeFormat(taskTime), timeFormat(plan.getStatistics().getMeanTime()), plan.getReturnType(),
+                        rendered ? value : plan.renderValue(value));
+                return;
+            case ERROR:
+                emit(Level.ERROR, plan.getErrorFormat(), methodInfo, timeFormat(taskTime),
+                        timeFormat(plan.getStatistics().getMeanTime()), plan.getReturnType(), error.toString(), error);
+                return;
+            case TREE:
+                emit(level, TREE_FORMAT, methodInfo, value);
+                return;
+            default:
+                return;
+        }
+    }
+
+    /**
+     * 输出日志，已capture()时使用业务线程的线程名、时间及MDC
+     */
+    private void emit(Level level, String loggerFormat, Object... arguments) {
+        if (threadName == null) {
+            log(logger, level, loggerFormat, arguments);
+            return;
+        }
+        if (LOGBACK_AVAILABLE && LogbackEventWriter.write(logger, level, loggerFormat, arguments, threadName,
+                timeStamp, mdc)) {
+            return;
+        }
+        // 其他日志实现无法指定线程名及时间，只恢复MDC
+        Map<String, String> previous = MDC.getCopyOfContextMap();
+        setMdc(mdc);
+        try {
+            log(logger, level, loggerFormat, arguments);
+        } finally {
+            setMdc(previous);
+        }
+    }
+
+    private static void setMdc(Map<String, String> contextMap) {
+        if (contextMap == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(contextMap);
+        }
+    }
+
+    private static boolean isClassPresent(String className) {
+        try {
+            Class.forName(className, false, LogEvent.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * 按相应级别输出日志
+     */
+    private static void log(Logger logger, Level level, String loggerFormat, Object... arguments) {
+        switch (level) {
+            case TRACE:
+                logger.trace(loggerFormat, arguments);
+                return;
+            case DEBUG:
+                logger.debug(loggerFormat, arguments);
+                return;
+            case INFO:
+                logger.info(loggerFormat, arguments);
+                return;
+            case WARN:
+                logger.warn(loggerFormat, arguments);
+                return;
+            case ERROR:
+                logger.error(loggerFormat, arguments);
+                return;
+            default:
+                return;
+        }
+    }
+
+    static String timeFormat(long nanoTime) {
+        if (nanoTime >= 10L * 1000 * 1000 * 1000) {
+            return nanoTime / (1000 * 1000 * 1000) + "s";
+        } else if (nanoTime >= 10 * 1000 * 1000) {
+            return nanoTime / (1000 * 1000) + "ms";
+        } else if (nanoTime >= 10 * 1000) {
+            return nanoTime / 1000 + "us";
+        } else {
+            return nanoTime + "ns";
+        }
+    }
+
+    /**
+     * 调用链id格式化为16位十六进制
+     */
+    static String idFormat(long id) {
+        String hex = Long.toHexString(id);
+        return ID_PADDING.substring(hex.length()) + hex;
+    }
+}
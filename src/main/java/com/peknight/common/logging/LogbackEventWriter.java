@@ -0,0 +1,68 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.logging;
+
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 使用Logback时，以业务线程中捕获的线程名、时间及MDC构造日志事件并直接交给Appender，
+ * 使异步输出的日志中%t、%d、%X与同步输出时一致
+ * 只在类路径中存在Logback时才会被加载
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+final class LogbackEventWriter {
+
+    private static final String FQCN = LogEvent.class.getName();
+
+    private LogbackEventWriter() {}
+
+    /**
+     * @return logger不是Logback的Logger时返回false，由调用方按普通方式输出
+     */
+    static boolean write(Logger logger, Level level, String format, Object[] arguments, String threadName,
+                         long timeStamp, Map<String, String> mdc) {
+        if (!(logger instanceof ch.qos.logback.classic.Logger)) {
+            return false;
+        }
+        ch.qos.logback.classic.Logger logbackLogger = (ch.qos.logback.classic.Logger) logger;
+        ch.qos.logback.classic.Level logbackLevel = ch.qos.logback.classic.Level.toLevel(level.toString(), null);
+        if (logbackLevel == null || !logbackLogger.isEnabledFor(logbackLevel)) {
+            return true;
+        }
+        LoggingEvent event = new LoggingEvent(FQCN, logbackLogger, logbackLevel, format, null, arguments);
+        event.setThreadName(threadName);
+        event.setTimeStamp(timeStamp);
+        // 必须显式设置，否则Appender读取MDC时取的是后台线程的MDC
+        event.setMDCPropertyMap(mdc == null ? Collections.<String, String>emptyMap() : mdc);
+        logbackLogger.callAppenders(event);
+        return true;
+    }
+}
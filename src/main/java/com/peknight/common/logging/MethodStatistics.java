@@ -0,0 +1,250 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.logging;
+
+import com.peknight.common.metrics.HistogramSnapshot;
+import com.peknight.common.metrics.LatencyHistogram;
+import com.peknight.common.metrics.SlidingWindowCounter;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 被@CommonLog拦截方法的执行统计
+ * 计数均使用LongAdder，各线程写入不同的计数单元（Cell之间有缓存行填充），读取时汇总，避免热点方法在多核下的缓存行争用
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class MethodStatistics implements MethodStatisticsMXBean {
+
+    /** 峰值采样间隔（2的幂），平均每多少次调用采样一次 */
+    private static final int PEAK_SAMPLE_INTERVAL = 64;
+
+    private final Method method;
+
+    /** 方法名及参数类型简称，用于区分重载方法 */
+    private final String methodName;
+
+    private final Level level;
+
+    /** 输出日志的调用序号，只在输出日志时递增 */
+    private final AtomicLong logSequence = new AtomicLong();
+
+    /** 执行完成的次数 */
+    private final LongAdder callCount = new LongAdder();
+
+    /** 执行总时间 */
+    private final LongAdder totalTime = new LongAdder();
+
+    /** 执行时间分布，用于观察长尾延迟 */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /** 慢调用次数 */
+    private final LongAdder slowCount = new LongAdder();
+
+    /** 抛出异常的次数 */
+    private final LongAdder errorCount = new LongAdder();
+
+    /** 正在执行的调用数 */
+    private final LongAdder inFlight = new LongAdder();
+
+    /**
+     * 同时执行的调用数峰值，只在采样到的调用开始时更新，是实际峰值的下限，持续时间短于采样间隔的突发可能被漏掉
+     * 精确统计需要在每次调用时汇总inFlight或使用单一的原子计数器，热点方法上开销过大
+     */
+    private final LongAccumulator peakInFlight = new LongAccumulator(Math::max, 0L);
+
+    /** 最近10秒内完成的调用数，用于计算每秒调用次数 */
+    private final SlidingWindowCounter throughput = new SlidingWindowCounter();
+
+    MethodStatistics(Method method, Level level) {
+        this.method = method;
+        this.level = level;
+        StringBuilder builder = new StringBuilder(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(parameterTypes[i].getSimpleName());
+        }
+        this.methodName = builder.append(')').toString();
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getClassName() {
+        return method.getDeclaringClass().getName();
+    }
+
+    @Override
+    public String getMethodName() {
+        return methodName;
+    }
+
+    @Override
+    public String getLevel() {
+        return level.toString();
+    }
+
+    /**
+     * 记录一次方法调用
+     */
+    void begin() {
+        inFlight.increment();
+        // sum()需遍历所有计数单元，只随机采样部分调用，读取时再采样一次
+        if ((ThreadLocalRandom.current().nextInt() & (PEAK_SAMPLE_INTERVAL - 1)) == 0) {
+            peakInFlight.accumulate(inFlight.sum());
+        }
+    }
+
+    /**
+     * 分配日志序号，同一方法的每次调用唯一，仅在输出日志时调用，未输出日志的调用不占用序号
+     */
+    long index() {
+        return logSequence.incrementAndGet();
+    }
+
+    /**
+     * 记录一次方法执行时间
+     */
+    void end(long taskTime) {
+        inFlight.decrement();
+        callCount.increment();
+        totalTime.add(taskTime);
+        throughput.increment();
+        latency.record(taskTime);
+    }
+
+    /**
+     * 记录一次慢调用
+     */
+    void slow() {
+        slowCount.increment();
+    }
+
+    /**
+     * 记录一次抛出异常的调用
+     */
+    void error() {
+        errorCount.increment();
+    }
+
+    @Override
+    public long getCallCount() {
+        return callCount.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    @Override
+    public long getSlowCount() {
+        return slowCount.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * 采样得到的峰值与当前执行中数量的较大值，读取不修改峰值
+     */
+    @Override
+    public long getPeakInFlight() {
+        return Math.max(peakInFlight.get(), inFlight.sum());
+    }
+
+    @Override
+    public long resetPeakInFlight() {
+        return Math.max(peakInFlight.getThenReset(), inFlight.sum());
+    }
+
+    @Override
+    public double getCallsPerSecond() {
+        return throughput.ratePerSecond();
+    }
+
+    @Override
+    public long getTotalTime() {
+        return totalTime.sum();
+    }
+
+    @Override
+    public long getMeanTime() {
+        long count = callCount.sum();
+        return count == 0 ? 0 : totalTime.sum() / count;
+    }
+
+    @Override
+    public long getP50Time() {
+        return latency.snapshot().getP50();
+    }
+
+    @Override
+    public long getP90Time() {
+        return latency.snapshot().getP90();
+    }
+
+    @Override
+    public long getP99Time() {
+        return latency.snapshot().getP99();
+    }
+
+    @Override
+    public long getP999Time() {
+        return latency.snapshot().getP999();
+    }
+
+    @Override
+    public long getMaxTime() {
+        return latency.snapshot().getMaxValue();
+    }
+
+    /**
+     * 执行时间分布快照（纳秒）
+     */
+    public HistogramSnapshot getLatencySnapshot() {
+        return latency.snapshot();
+    }
+
+    /**
+     * 获取执行时间分布快照并清零，不影响正在执行的方法
+     */
+    @Override
+    public HistogramSnapshot resetLatency() {
+        return latency.snapshotAndReset();
+    }
+}
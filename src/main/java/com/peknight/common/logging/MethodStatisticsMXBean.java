@@ -0,0 +1,80 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.logging;
+
+import com.peknight.common.metrics.HistogramSnapshot;
+
+/**
+ * 被@CommonLog拦截方法的执行统计（JMX），时间单位均为纳秒
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public interface MethodStatisticsMXBean {
+
+    String getClassName();
+
+    String getMethodName();
+
+    /** @CommonLog配置的日志级别 */
+    String getLevel();
+
+    /** 已完成的调用次数 */
+    long getCallCount();
+
+    /** 抛出异常的调用次数 */
+    long getErrorCount();
+
+    long getSlowCount();
+
+    /** 正在执行的调用数 */
+    long getInFlight();
+
+    /** 同时执行的调用数峰值，按1/64的调用采样统计的近似值（实际峰值的下限），短暂的突发可能未被统计 */
+    long getPeakInFlight();
+
+    /** 获取同时执行的调用数峰值并清零 */
+    long resetPeakInFlight();
+
+    /** 最近10秒平均每秒完成的调用次数 */
+    double getCallsPerSecond();
+
+    long getTotalTime();
+
+    long getMeanTime();
+
+    long getP50Time();
+
+    long getP90Time();
+
+    long getP99Time();
+
+    long getP999Time();
+
+    long getMaxTime();
+
+    /** 获取执行时间分布快照并清零 */
+    HistogramSnapshot resetLatency();
+}
@@ -0,0 +1,111 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.logging;
+
+import com.peknight.common.metrics.HistogramSnapshot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 慢调用检测
+ * 阈值可以是@CommonLog上声明的固定值，也可以根据方法最近一段时间的p99乘以倍数自动学习，两者同时启用时超过任一阈值即为慢调用
+ * 自适应阈值每秒最多由一个线程重新计算一次，其余调用只读取volatile变量；
+ * 执行时间分布取自MethodStatistics的直方图，以两次学习之间新增的记录作为窗口，不额外记录
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+final class SlowCallDetector {
+
+    /** 学习阈值至少需要的样本数 */
+    private static final long MIN_SAMPLES = 100;
+
+    private static final long REFRESH_INTERVAL_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long fixedThresholdInNanos;
+
+    private final double p99Multiple;
+
+    /** 方法的执行统计，未启用自适应阈值时为null */
+    private final MethodStatistics statistics;
+
+    private final AtomicLong nextRefreshTime;
+
+    /** 上一次学习阈值时的累计分布，窗口的起点 */
+    private volatile HistogramSnapshot windowStart;
+
+    private volatile long learnedThresholdInNanos = Long.MAX_VALUE;
+
+    private SlowCallDetector(long fixedThresholdInNanos, double p99Multiple, MethodStatistics statistics) {
+        this.fixedThresholdInNanos = fixedThresholdInNanos > 0 ? fixedThresholdInNanos : Long.MAX_VALUE;
+        this.p99Multiple = p99Multiple;
+        if (p99Multiple > 0) {
+            this.statistics = statistics;
+            this.nextRefreshTime = new AtomicLong(System.nanoTime() + REFRESH_INTERVAL_IN_NANOS);
+            this.windowStart = statistics.getLatencySnapshot();
+        } else {
+            this.statistics = null;
+            this.nextRefreshTime = null;
+        }
+    }
+
+    /**
+     * 根据@CommonLog的配置创建，未启用慢调用检测时返回null
+     */
+    static SlowCallDetector create(CommonLog commonLog, MethodStatistics statistics) {
+        if (commonLog == null || (commonLog.slowThresholdMillis() <= 0 && commonLog.slowP99Multiple() <= 0)) {
+            return null;
+        }
+        return new SlowCallDetector(TimeUnit.MILLISECONDS.toNanos(commonLog.slowThresholdMillis()),
+                commonLog.slowP99Multiple(), statistics);
+    }
+
+    /**
+     * 判断是否为慢调用，执行时间由MethodStatistics记录
+     */
+    boolean isSlow(long taskTime) {
+        if (statistics != null) {
+            refresh();
+        }
+        return taskTime > fixedThresholdInNanos || taskTime > learnedThresholdInNanos;
+    }
+
+    private void refresh() {
+        long now = System.nanoTime();
+        long next = nextRefreshTime.get();
+        if (now - next < 0 || !nextRefreshTime.compareAndSet(next, now + REFRESH_INTERVAL_IN_NANOS)) {
+            return;
+        }
+        HistogramSnapshot current = statistics.getLatencySnapshot();
+        HistogramSnapshot window = current.since(windowStart);
+        // 样本不足时保留窗口起点，窗口继续扩大
+        if (window.getCount() >= MIN_SAMPLES) {
+            windowStart = current;
+            double threshold = window.getP99() * p99Multiple;
+            learnedThresholdInNanos = threshold >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) threshold;
+        }
+    }
+}
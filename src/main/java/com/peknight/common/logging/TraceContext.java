@@ -0,0 +1,183 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.logging;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @CommonLog调用链上下文
+ * 每个线程维护一个调用栈，嵌套的@CommonLog方法共享最外层方法的traceId，各自生成spanId并记录上层方法的spanId作为parentId
+ * 栈帧与调用树节点数组按线程复用，稳定运行后入栈、出栈不再分配内存（仅最外层方法开启调用树时出栈生成一个CallTree快照）
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public final class TraceContext {
+
+    private static final ThreadLocal<TraceContext> CONTEXT = ThreadLocal.withInitial(TraceContext::new);
+
+    /** 一棵调用树最多记录的节点数，超出的节点只计数 */
+    private static final int MAX_CALL_TREE_NODES = 256;
+
+    private Frame[] frames = new Frame[8];
+
+    private int depth = 0;
+
+    /** 当前最外层方法是否记录调用树 */
+    private boolean recording = false;
+
+    private int nodeCount = 0;
+
+    private int droppedNodeCount = 0;
+
+    private InterceptionPlan[] nodePlans = new InterceptionPlan[16];
+
+    private int[] nodeDepths = new int[16];
+
+    private long[] nodeTotalTimes = new long[16];
+
+    private long[] nodeChildTimes = new long[16];
+
+    private TraceContext() {}
+
+    static TraceContext current() {
+        return CONTEXT.get();
+    }
+
+    /**
+     * 当前线程正在执行的@CommonLog方法的traceId，未开启调用链追踪或不在@CommonLog方法中时返回0
+     */
+    public static long currentTraceId() {
+        TraceContext context = CONTEXT.get();
+        return context.depth == 0 ? 0 : context.frames[context.depth - 1].traceId;
+    }
+
+    /**
+     * 当前线程正在执行的@CommonLog方法的spanId，未开启调用链追踪或不在@CommonLog方法中时返回0
+     */
+    public static long currentSpanId() {
+        TraceContext context = CONTEXT.get();
+        return context.depth == 0 ? 0 : context.frames[context.depth - 1].spanId;
+    }
+
+    /**
+     * 方法开始执行时入栈
+     *
+     * @param callTree 作为最外层方法时是否记录调用树
+     */
+    Frame push(InterceptionPlan plan, boolean callTree) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = new Frame();
+            frames[depth] = frame;
+        }
+        Frame parent = depth == 0 ? null : frames[depth - 1];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        frame.traceId = parent == null ? nonZero(random.nextLong()) : parent.traceId;
+        frame.spanId = nonZero(random.nextLong());
+        frame.parentId = parent == null ? 0 : parent.spanId;
+        frame.childTime = 0;
+        if (parent == null) {
+            recording = callTree;
+            nodeCount = 0;
+            droppedNodeCount = 0;
+        }
+        frame.node = recording ? addNode(plan) : -1;
+        depth++;
+        return frame;
+    }
+
+    /**
+     * 方法执行结束时出栈，最外层方法出栈且记录了调用树时返回调用树快照，否则返回null
+     */
+    CallTree pop(Frame frame, long taskTime) {
+        if (depth == 0 || frames[depth - 1] != frame) {
+            // 栈已被破坏（如入栈后未正常出栈），清空以免影响后续调用
+            depth = 0;
+            recording = false;
+            return null;
+        }
+        depth--;
+        if (frame.node >= 0) {
+            nodeTotalTimes[frame.node] = taskTime;
+            nodeChildTimes[frame.node] = frame.childTime;
+        }
+        if (depth > 0) {
+            frames[depth - 1].childTime += taskTime;
+            return null;
+        }
+        if (!recording) {
+            return null;
+        }
+        recording = false;
+        return new CallTree(Arrays.copyOf(nodePlans, nodeCount), Arrays.copyOf(nodeDepths, nodeCount),
+                Arrays.copyOf(nodeTotalTimes, nodeCount), Arrays.copyOf(nodeChildTimes, nodeCount), droppedNodeCount);
+    }
+
+    private int addNode(InterceptionPlan plan) {
+        if (nodeCount >= MAX_CALL_TREE_NODES) {
+            droppedNodeCount++;
+            return -1;
+        }
+        if (nodeCount == nodePlans.length) {
+            int length = nodeCount * 2;
+            nodePlans = Arrays.copyOf(nodePlans, length);
+            nodeDepths = Arrays.copyOf(nodeDepths, length);
+            nodeTotalTimes = Arrays.copyOf(nodeTotalTimes, length);
+            nodeChildTimes = Arrays.copyOf(nodeChildTimes, length);
+        }
+        nodePlans[nodeCount] = plan;
+        nodeDepths[nodeCount] = depth;
+        nodeTotalTimes[nodeCount] = 0;
+        nodeChildTimes[nodeCount] = 0;
+        return nodeCount++;
+    }
+
+    private static long nonZero(long id) {
+        return id == 0 ? 1 : id;
+    }
+
+    /**
+     * 调用栈帧，按线程复用
+     */
+    static final class Frame {
+
+        long traceId;
+
+        long spanId;
+
+        long parentId;
+
+        /** 嵌套的@CommonLog方法执行时间之和 */
+        long childTime;
+
+        /** 在调用树中的节点下标，不记录时为-1 */
+        int node;
+    }
+}
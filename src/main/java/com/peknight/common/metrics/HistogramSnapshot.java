@@ -0,0 +1,137 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.metrics;
+
+/**
+ * 直方图快照，不可变
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class HistogramSnapshot {
+
+    private final long[] counts;
+
+    private final long count;
+
+    private final long totalValue;
+
+    private final long maxValue;
+
+    HistogramSnapshot(long[] counts, long totalValue, long maxValue) {
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        this.counts = counts;
+        this.count = count;
+        this.totalValue = totalValue;
+        this.maxValue = count == 0 ? 0 : maxValue;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalValue() {
+        return totalValue;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public long getMean() {
+        return count == 0 ? 0 : totalValue / count;
+    }
+
+    /**
+     * 获取百分位值
+     *
+     * @param percentile 百分位，取值范围(0, 100]
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        double ratio = Math.min(Math.max(percentile, 0.0), 100.0) / 100.0;
+        long target = Math.max(1, (long) Math.ceil(ratio * count));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return Math.min(LatencyHistogram.highestEquivalentValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * 自previous之后新增的记录，用于从累计的直方图中取出一段时间窗口内的分布；
+     * 期间直方图被重置过（某个桶的计数减少）时返回当前快照，最大值为当前快照的最大值（窗口内最大值的上界）
+     */
+    public HistogramSnapshot since(HistogramSnapshot previous) {
+        if (previous == null || previous.counts.length != counts.length) {
+            return this;
+        }
+        long[] delta = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            delta[i] = counts[i] - previous.counts[i];
+            if (delta[i] < 0) {
+                return this;
+            }
+        }
+        return new HistogramSnapshot(delta, Math.max(0, totalValue - previous.totalValue), maxValue);
+    }
+
+    public long getP50() {
+        return getValueAtPercentile(50.0);
+    }
+
+    public long getP90() {
+        return getValueAtPercentile(90.0);
+    }
+
+    public long getP99() {
+        return getValueAtPercentile(99.0);
+    }
+
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{" +
+                "count=" + count +
+                ", mean=" + getMean() +
+                ", p50=" + getP50() +
+                ", p90=" + getP90() +
+                ", p99=" + getP99() +
+                ", p999=" + getP999() +
+                ", max=" + maxValue +
+                '}';
+    }
+}
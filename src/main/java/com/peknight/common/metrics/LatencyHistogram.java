@@ -0,0 +1,210 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁、定长内存的延迟直方图（HDR风格的对数-线性分桶）
+ *
+ * 小于SUB_BUCKET_COUNT的值每个值一个桶，之后每个2的幂区间再等分为SUB_BUCKET_COUNT个子桶，相对误差不超过1/SUB_BUCKET_COUNT
+ * 计数分散到多个条带（stripe）中，读取快照时再汇总：初始只有一个条带，与LongAdder类似，
+ * 线程更新发生竞争（CAS失败）时才增加条带数（最多为CPU核数向上取整的2的幂）并更换该线程的条带，
+ * 每个线程记录自己当前使用的条带（probe），条带首尾有缓存行填充，不同条带的计数不会位于同一缓存行
+ * 快照与重置均不需要停止记录，重置时逐桶getAndSet(0)，正在并发记录的值会落入本次快照或下一次快照，不会丢失
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = TimeUnit.MINUTES.toNanos(1);
+
+    /** 条带首尾的填充，2个缓存行 */
+    private static final int PAD = 16;
+
+    /** 每个线程当前使用的条带的哈希值，发生竞争时更换 */
+    private static final ThreadLocal<int[]> PROBE = ThreadLocal.withInitial(
+            () -> new int[]{ThreadLocalRandom.current().nextInt() | 1});
+
+    /** 按需创建的条带，未使用的为null */
+    private final AtomicReferenceArray<AtomicLongArray> stripes;
+
+    /** 条带数上限减一 */
+    private final int maxStripeMask;
+
+    /** 当前已启用的条带数减一 */
+    private volatile int stripeMask = 0;
+
+    private final int bucketCount;
+
+    private final LongAdder totalValue = new LongAdder();
+
+    private final LongAccumulator maxValue = new LongAccumulator(Math::max, 0L);
+
+    public LatencyHistogram() {
+        this(DEFAULT_HIGHEST_TRACKABLE_VALUE, defaultStripes());
+    }
+
+    /**
+     * @param highestTrackableValue 可区分的最大值，超过此值的记录归入最后一个桶（最大值仍然精确记录）
+     * @param stripes 条带数上限，会向上取整为2的幂
+     */
+    public LatencyHistogram(long highestTrackableValue, int stripes) {
+        if (highestTrackableValue < SUB_BUCKET_COUNT) {
+            highestTrackableValue = SUB_BUCKET_COUNT;
+        }
+        this.bucketCount = bucketIndex(highestTrackableValue) + 1;
+        int stripeCount = ceilingPowerOfTwo(Math.max(1, stripes));
+        this.stripes = new AtomicReferenceArray<>(stripeCount);
+        this.stripes.set(0, newStripe());
+        this.maxStripeMask = stripeCount - 1;
+    }
+
+    /**
+     * 记录一个值（负值按0处理）
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int index = PAD + Math.min(bucketIndex(value), bucketCount - 1);
+        int[] probe = PROBE.get();
+        AtomicLongArray stripe = stripes.get(probe[0] & stripeMask);
+        long count = stripe.get(index);
+        if (!stripe.compareAndSet(index, count, count + 1)) {
+            stripe = contended(probe);
+            stripe.incrementAndGet(index);
+        }
+        totalValue.add(value);
+        maxValue.accumulate(value);
+    }
+
+    /**
+     * 发生竞争时增加条带数（未达上限时）并更换当前线程的条带
+     */
+    private AtomicLongArray contended(int[] probe) {
+        int mask = stripeMask;
+        if (mask < maxStripeMask) {
+            int newMask = (mask << 1) | 1;
+            for (int i = mask + 1; i <= newMask; i++) {
+                if (stripes.get(i) == null) {
+                    stripes.compareAndSet(i, null, newStripe());
+                }
+            }
+            synchronized (this) {
+                if (stripeMask < newMask) {
+                    stripeMask = newMask;
+                }
+            }
+        }
+        // xorshift
+        int h = probe[0];
+        h ^= h << 13;
+        h ^= h >>> 17;
+        h ^= h << 5;
+        probe[0] = h;
+        return stripes.get(h & stripeMask);
+    }
+
+    private AtomicLongArray newStripe() {
+        return new AtomicLongArray(bucketCount + 2 * PAD);
+    }
+
+    /**
+     * 获取当前数据的快照，不影响记录
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[bucketCount];
+        for (int s = 0; s <= maxStripeMask; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < bucketCount; i++) {
+                counts[i] += stripe.get(PAD + i);
+            }
+        }
+        return new HistogramSnapshot(counts, totalValue.sum(), maxValue.get());
+    }
+
+    /**
+     * 获取快照并清零，用于按周期输出统计值
+     */
+    public HistogramSnapshot snapshotAndReset() {
+        long[] counts = new long[bucketCount];
+        for (int s = 0; s <= maxStripeMask; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            for (int i = 0; i < bucketCount; i++) {
+                if (stripe.get(PAD + i) != 0) {
+                    counts[i] += stripe.getAndSet(PAD + i, 0);
+                }
+            }
+        }
+        return new HistogramSnapshot(counts, totalValue.sumThenReset(), maxValue.getThenReset());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /**
+     * 桶内可能出现的最大值
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = index & (SUB_BUCKET_COUNT - 1);
+        return ((SUB_BUCKET_COUNT + subBucket) << shift) + (1L << shift) - 1;
+    }
+
+    private static int defaultStripes() {
+        return ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors());
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+}
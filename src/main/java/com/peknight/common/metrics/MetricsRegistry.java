@@ -0,0 +1,190 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 统计信息注册中心
+ * 注册的统计对象以MXBean的形式同时暴露给JMX，以及通过scrape()以纯文本形式拉取（每行一个指标，格式兼容Prometheus文本格式）
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public final class MetricsRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private static final String TYPE_KEY = "type";
+
+    private static final Map<ObjectName, StandardMBean> REGISTRY = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {}
+
+    /**
+     * 注册统计对象，同一名称重复注册时忽略，注册到JMX失败时只打印警告，不影响拉取
+     */
+    public static <T> void register(ObjectName name, T metrics, Class<T> mxBeanInterface) {
+        StandardMBean mBean = new StandardMBean(metrics, mxBeanInterface, true);
+        if (REGISTRY.putIfAbsent(name, mBean) != null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(mBean, name);
+            }
+        } catch (JMException | SecurityException e) {
+            LOGGER.warn("Register MBean [{}] Failed: {}", name, e.toString());
+        }
+    }
+
+    public static void unregister(ObjectName name) {
+        if (REGISTRY.remove(name) == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException | SecurityException e) {
+            LOGGER.warn("Unregister MBean [{}] Failed: {}", name, e.toString());
+        }
+    }
+
+    public static Set<ObjectName> getNames() {
+        return Collections.unmodifiableSet(REGISTRY.keySet());
+    }
+
+    /**
+     * 生成ObjectName，属性值含有特殊字符时自动加引号
+     *
+     * @param keyValues 依次为属性名、属性值
+     */
+    public static ObjectName objectName(String domain, String type, String... keyValues) {
+        Hashtable<String, String> table = new Hashtable<>();
+        table.put(TYPE_KEY, quoteIfNecessary(type));
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            table.put(keyValues[i], quoteIfNecessary(keyValues[i + 1]));
+        }
+        try {
+            return new ObjectName(domain, table);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 以纯文本形式输出所有统计值，每行格式为：type_Attribute{key="value",...} number
+     */
+    public static String scrape() {
+        StringBuilder builder = new StringBuilder();
+        List<ObjectName> names = new ArrayList<>(REGISTRY.keySet());
+        Collections.sort(names);
+        for (ObjectName name : names) {
+            StandardMBean mBean = REGISTRY.get(name);
+            if (mBean == null) {
+                continue;
+            }
+            String labels = labels(name);
+            String prefix = unquote(name.getKeyProperty(TYPE_KEY)) + "_";
+            for (Attribute attribute : attributes(mBean)) {
+                Object value = attribute.getValue();
+                if (value instanceof Boolean) {
+                    value = (Boolean) value ? 1 : 0;
+                }
+                if (value instanceof Number) {
+                    builder.append(prefix).append(attribute.getName()).append(labels).append(' ')
+                            .append(value).append('\n');
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private static List<Attribute> attributes(StandardMBean mBean) {
+        MBeanAttributeInfo[] attributeInfos = mBean.getMBeanInfo().getAttributes();
+        String[] attributeNames = new String[attributeInfos.length];
+        for (int i = 0; i < attributeInfos.length; i++) {
+            attributeNames[i] = attributeInfos[i].getName();
+        }
+        AttributeList attributeList = mBean.getAttributes(attributeNames);
+        return attributeList.asList();
+    }
+
+    private static String labels(ObjectName name) {
+        Map<String, String> properties = new TreeMap<>(name.getKeyPropertyList());
+        properties.remove(TYPE_KEY);
+        if (properties.isEmpty()) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(entry.getKey()).append("=\"").append(escape(unquote(entry.getValue()))).append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String quoteIfNecessary(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '=' || c == ':' || c == '"' || c == '*' || c == '?' || c == '\n') {
+                return ObjectName.quote(value);
+            }
+        }
+        return value;
+    }
+
+    private static String unquote(String value) {
+        return value.startsWith("\"") ? ObjectName.unquote(value) : value;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2027 PeKnight(JKpeknight@gmail.com)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.peknight.common.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 滑动窗口计数器
+ * 窗口按时间等分为若干个桶，每个桶使用LongAdder计数，桶过期后由第一个写入的线程清零复用，内存固定
+ * 桶切换时与清零并发的少量计数可能丢失，适用于统计速率等允许近似值的场景
+ *
+ * @author PeKnight
+ *
+ * Created by PeKnight on 2018/4/20.
+ */
+public class SlidingWindowCounter {
+
+    private final int bucketCount;
+
+    private final long bucketSizeInNanos;
+
+    /** 每个桶当前对应的时间片序号 */
+    private final AtomicLongArray epochs;
+
+    private final LongAdder[] counts;
+
+    /**
+     * 默认窗口为10秒，每秒一个桶
+     */
+    public SlidingWindowCounter() {
+        this(10, TimeUnit.SECONDS, 10);
+    }
+
+    /**
+     * @param windowSize 窗口大小
+     * @param unit 窗口大小的时间单位
+     * @param bucketCount 窗口等分的桶数
+     */
+    public SlidingWindowCounter(long windowSize, TimeUnit unit, int bucketCount) {
+        if (windowSize <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("windowSize and bucketCount must be positive");
+        }
+        // 多出一个桶用于存放当前未结束的时间片
+        this.bucketCount = bucketCount + 1;
+        this.bucketSizeInNanos = Math.max(1L, unit.toNanos(windowSize) / bucketCount);
+        this.epochs = new AtomicLongArray(this.bucketCount);
+        this.counts = new LongAdder[this.bucketCount];
+        long epoch = currentEpoch();
+        for (int i = 0; i < this.bucketCount; i++) {
+            this.epochs.set(i, Long.MIN_VALUE);
+            this.counts[i] = new LongAdder();
+        }
+        this.epochs.set(index(epoch), epoch);
+    }
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void add(long x) {
+        long epoch = currentEpoch();
+        int index = index(epoch);
+        long bucketEpoch = epochs.get(index);
+        if (bucketEpoch < epoch && epochs.compareAndSet(index, bucketEpoch, epoch)) {
+            counts[index].reset();
+        }
+        counts[index].add(x);
+    }
+
+    /**
+     * 窗口内（不含当前未结束的时间片）的计数之和
+     */
+    public long sum() {
+        long epoch = currentEpoch();
+        long sum = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            long bucketEpoch = epochs.get(i);
+            if (bucketEpoch < epoch && bucketEpoch >= epoch - (bucketCount - 1)) {
+                sum += counts[i].sum();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 窗口内及当前未结束的时间片的计数之和，用于需要立即看到最新计数的限额判断
+     */
+    public long sumWithCurrent() {
+        long epoch = currentEpoch();
+        long sum = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            long bucketEpoch = epochs.get(i);
+            if (bucketEpoch <= epoch && bucketEpoch >= epoch - (bucketCount - 1)) {
+                sum += counts[i].sum();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 窗口内的平均每秒计数
+     */
+    public double ratePerSecond() {
+        return sum() * (double) TimeUnit.SECONDS.toNanos(1) / (bucketSizeInNanos * (bucketCount - 1));
+    }
+
+    private long currentEpoch() {
+        return Math.floorDiv(System.nanoTime(), bucketSizeInNanos);
+    }
+
+    private int index(long epoch) {
+        return (int) Math.floorMod(epoch, (long) bucketCount);
+    }
+}
@@ -167,28 +167,38 @@ public final class MethodUtils {
     public static String argsToString(MethodSignature methodSignature, Object[] args) {
         // 获取方法参数类型（注意空指针）
         Class[] parameterTypes = methodSignature.getParameterTypes();
-        if (parameterTypes == null) {
-            parameterTypes = new Class[args.length];
+        String[] parameterTypeNames = null;
+        if (parameterTypes != null) {
+            parameterTypeNames = new String[parameterTypes.length];
             for (int i = 0; i < parameterTypes.length; i++) {
-                parameterTypes[i] = args[i].getClass();
-            }
-        }
-        // 获取方法参数名（注意空指针）
-        String[] parameterNames = methodSignature.getParameterNames();
-        if (parameterNames == null) {
-            parameterNames = new String[args.length];
-            for (int i = 0; i < parameterNames.length; i++) {
-                parameterNames[i] = "arg" + i;
+                parameterTypeNames[i] = parameterTypes[i].getSimpleName();
             }
         }
+        return argsToString(parameterTypeNames, methodSignature.getParameterNames(), args);
+    }
+
+    /**
+     * 使用预先解析好的参数类型简称与参数名生成参数字符串，任一数组为null时按参数值的实际类型和arg + 下标生成
+     */
+    public static String argsToString(String[] parameterTypeNames, String[] parameterNames, Object[] args) {
+        return argsToString(parameterTypeNames, parameterNames, args, -1);
+    }
+
+    /**
+     * 同上，数组、Collection、Map类型的参数最多输出前maxElements个元素，maxElements小于0时不截断
+     */
+    public static String argsToString(String[] parameterTypeNames, String[] parameterNames, Object[] args,
+                                      int maxElements) {
         StringBuilder paramStringBuilder = new StringBuilder("");
         for (int i = 0; i < args.length; i++) {
             if (args[i] != null) {
                 if (i > 0) {
                     paramStringBuilder.append(", ");
                 }
-                paramStringBuilder.append("(").append(parameterTypes[i].getSimpleName()).append(" ")
-                        .append(parameterNames[i]).append(") ").append(StringUtils.toString(args[i]));
+                paramStringBuilder.append("(")
+                        .append(parameterTypeNames == null ? args[i].getClass().getSimpleName() : parameterTypeNames[i])
+                        .append(" ").append(parameterNames == null ? "arg" + i : parameterNames[i]).append(") ")
+                        .append(StringUtils.toString(args[i], maxElements));
             }
         }
         return paramStringBuilder.toString();
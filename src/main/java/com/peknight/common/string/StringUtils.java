@@ -23,7 +23,11 @@
  */
 package com.peknight.common.string;
 
+import java.lang.reflect.Array;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * String工具类
@@ -157,6 +161,43 @@ public final class StringUtils {
         }
     }
 
+    /**
+     * 通用toString方法，数组、Collection、Map最多输出前maxElements个元素，maxElements小于0时不截断
+     */
+    public static <T> String toString(T t, int maxElements) {
+        if (t == null || maxElements < 0) {
+            return toString(t);
+        }
+        if (t.getClass().isArray()) {
+            int length = Array.getLength(t);
+            if (length <= maxElements) {
+                return toString(t);
+            }
+            StringBuilder builder = new StringBuilder("[");
+            for (int i = 0; i < maxElements; i++) {
+                builder.append(toString(Array.get(t, i), maxElements)).append(", ");
+            }
+            return builder.append("...(").append(length).append(" elements)]").toString();
+        } else if (t instanceof Collection) {
+            return truncate(((Collection<?>) t).iterator(), ((Collection<?>) t).size(), maxElements, t);
+        } else if (t instanceof Map) {
+            return truncate(((Map<?, ?>) t).entrySet().iterator(), ((Map<?, ?>) t).size(), maxElements, t);
+        } else {
+            return t.toString();
+        }
+    }
+
+    private static String truncate(Iterator<?> iterator, int size, int maxElements, Object origin) {
+        if (size <= maxElements) {
+            return origin.toString();
+        }
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < maxElements && iterator.hasNext(); i++) {
+            builder.append(toString(iterator.next(), maxElements)).append(", ");
+        }
+        return builder.append("...(").append(size).append(" elements)]").toString();
+    }
+
     /**
      * 支持负值参数的substring方法
      */
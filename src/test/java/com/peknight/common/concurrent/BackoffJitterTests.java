@@ -0,0 +1,84 @@
+package com.peknight.common.concurrent;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BackoffJitterTests {
+
+	private static final int SAMPLES = 20000;
+
+	private static final long SLOT = 100;
+
+	private static final int MAXIMUM_RETRY_COUNT = 4;
+
+	@Test
+	public void binaryExponentialIsWholeSlotsBelowCeiling() {
+		long sum = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			long delay = BackoffJitter.BINARY_EXPONENTIAL.nextDelay(3, 0, SLOT, MAXIMUM_RETRY_COUNT);
+			assertTrue(delay >= 0 && delay < 8 * SLOT);
+			assertEquals(0, delay % SLOT);
+			sum += delay;
+		}
+		// 均匀分布在0..7个时间片上，均值3.5个时间片
+		assertMean(3.5 * SLOT, sum);
+	}
+
+	@Test
+	public void fullJitterIsUniformUpToCeiling() {
+		long sum = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			long delay = BackoffJitter.FULL.nextDelay(3, 0, SLOT, MAXIMUM_RETRY_COUNT);
+			assertTrue(delay >= 0 && delay <= 8 * SLOT);
+			sum += delay;
+		}
+		assertMean(4 * SLOT, sum);
+	}
+
+	@Test
+	public void equalJitterKeepsHalfOfCeiling() {
+		long sum = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			long delay = BackoffJitter.EQUAL.nextDelay(3, 0, SLOT, MAXIMUM_RETRY_COUNT);
+			assertTrue(delay >= 4 * SLOT && delay <= 8 * SLOT);
+			sum += delay;
+		}
+		assertMean(6 * SLOT, sum);
+	}
+
+	@Test
+	public void decorrelatedJitterStaysBetweenSlotAndCap() {
+		long previous = SLOT;
+		for (int i = 0; i < SAMPLES; i++) {
+			long delay = BackoffJitter.DECORRELATED.nextDelay(i, previous, SLOT, MAXIMUM_RETRY_COUNT);
+			assertTrue(delay >= SLOT && delay <= Math.min(16 * SLOT, previous * 3));
+			previous = delay;
+		}
+	}
+
+	@Test
+	public void cappedIsDeterministic() {
+		assertEquals(SLOT, BackoffJitter.CAPPED.nextDelay(0, 0, SLOT, MAXIMUM_RETRY_COUNT));
+		assertEquals(8 * SLOT, BackoffJitter.CAPPED.nextDelay(3, 0, SLOT, MAXIMUM_RETRY_COUNT));
+		assertEquals(16 * SLOT, BackoffJitter.CAPPED.nextDelay(10, 0, SLOT, MAXIMUM_RETRY_COUNT));
+	}
+
+	@Test
+	public void jitterSpreadsRetriesUnderContention() {
+		int clients = 100;
+		BackoffSimulator.Result capped = new BackoffSimulator(BackoffJitter.CAPPED, 1, 10, 20).simulate(clients, 1);
+		BackoffSimulator.Result full = new BackoffSimulator(BackoffJitter.FULL, 1, 10, 20).simulate(clients, 1);
+		assertEquals(clients, capped.getSuccesses() + capped.getGiveUps());
+		assertEquals(clients, full.getSuccesses() + full.getGiveUps());
+		// 不抖动时失败的客户端同时重试，每次只有一个成功
+		assertTrue(capped.toString(), capped.getGiveUps() > 0);
+		assertTrue(full + " vs " + capped, full.getSuccesses() > capped.getSuccesses());
+	}
+
+	private static void assertMean(double expected, long sum) {
+		double mean = (double) sum / SAMPLES;
+		assertTrue("mean " + mean + " expected " + expected, Math.abs(mean - expected) < expected * 0.05);
+	}
+}
@@ -0,0 +1,133 @@
+package com.peknight.common.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 测试用的退避策略模拟器，在虚拟时间中模拟多个客户端同时竞争同一资源，用于比较不同退避策略产生的总重试负载
+ * 资源每个时刻最多接受capacity次调用，超出部分失败并按退避策略等待后重试
+ * 时间单位与slot相同，不实际休眠，结果只取决于策略本身
+ */
+class BackoffSimulator {
+
+	private final BackoffStrategy backoffStrategy;
+
+	private final long slot;
+
+	private final int maximumRetryCount;
+
+	/** 每个客户端最多尝试的次数，达到后放弃 */
+	private final int maximumAttempts;
+
+	BackoffSimulator(BackoffStrategy backoffStrategy, long slot, int maximumRetryCount, int maximumAttempts) {
+		this.backoffStrategy = backoffStrategy;
+		this.slot = slot;
+		this.maximumRetryCount = maximumRetryCount;
+		this.maximumAttempts = maximumAttempts;
+	}
+
+	/**
+	 * @param clients 同时开始调用的客户端数
+	 * @param capacity 资源每个时刻最多接受的调用数
+	 */
+	Result simulate(int clients, int capacity) {
+		int[] retryCounts = new int[clients];
+		long[] previousDelays = new long[clients];
+		PriorityQueue<long[]> events = new PriorityQueue<>(Math.max(clients, 1),
+				(a, b) -> Long.compare(a[0], b[0]));
+		for (int i = 0; i < clients; i++) {
+			events.add(new long[]{0, i});
+		}
+		long totalAttempts = 0;
+		int successes = 0;
+		int giveUps = 0;
+		long makespan = 0;
+		int peakLoad = 0;
+		List<Integer> arrivals = new ArrayList<>();
+		while (!events.isEmpty()) {
+			long time = events.peek()[0];
+			arrivals.clear();
+			while (!events.isEmpty() && events.peek()[0] == time) {
+				arrivals.add((int) events.poll()[1]);
+			}
+			totalAttempts += arrivals.size();
+			peakLoad = Math.max(peakLoad, arrivals.size());
+			// 同一时刻到达的调用中随机选出capacity个成功
+			Collections.shuffle(arrivals);
+			for (int i = 0; i < arrivals.size(); i++) {
+				int client = arrivals.get(i);
+				if (i < capacity) {
+					successes++;
+					makespan = time;
+				} else if (++retryCounts[client] >= maximumAttempts) {
+					giveUps++;
+					makespan = time;
+				} else {
+					long delay = Math.max(backoffStrategy.nextDelay(retryCounts[client], previousDelays[client],
+							slot, maximumRetryCount), 0);
+					previousDelays[client] = delay;
+					// 等待时间为0的客户端仍在下一时刻重试，避免在同一时刻无限循环
+					events.add(new long[]{time + Math.max(delay, 1), client});
+				}
+			}
+		}
+		return new Result(totalAttempts, successes, giveUps, makespan, peakLoad);
+	}
+
+	static class Result {
+
+		/** 所有客户端的调用总次数，含首次调用 */
+		private final long totalAttempts;
+
+		private final int successes;
+
+		private final int giveUps;
+
+		/** 最后一个客户端成功或放弃的时刻 */
+		private final long makespan;
+
+		/** 同一时刻到达资源的最大调用数 */
+		private final int peakLoad;
+
+		Result(long totalAttempts, int successes, int giveUps, long makespan, int peakLoad) {
+			this.totalAttempts = totalAttempts;
+			this.successes = successes;
+			this.giveUps = giveUps;
+			this.makespan = makespan;
+			this.peakLoad = peakLoad;
+		}
+
+		public long getTotalAttempts() {
+			return totalAttempts;
+		}
+
+		public int getSuccesses() {
+			return successes;
+		}
+
+		public int getGiveUps() {
+			return giveUps;
+		}
+
+		public long getMakespan() {
+			return makespan;
+		}
+
+		public int getPeakLoad() {
+			return peakLoad;
+		}
+
+		@Override
+		public String toString() {
+			return "Result{" +
+					"totalAttempts=" + totalAttempts +
+					", successes=" + successes +
+					", giveUps=" + giveUps +
+					", makespan=" + makespan +
+					", peakLoad=" + peakLoad +
+					'}';
+		}
+	}
+}
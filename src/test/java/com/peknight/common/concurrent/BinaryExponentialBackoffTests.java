@@ -0,0 +1,189 @@
+package com.peknight.common.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryExponentialBackoffTests {
+
+	/** 固定等待一个时间片，使测试不依赖随机抖动 */
+	private static final BackoffStrategy FIXED = (retryCount, previousDelay, slot, maximumRetryCount) -> slot;
+
+	private ScheduledExecutorService scheduler;
+
+	@Before
+	public void setUp() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void successOnFirstAttempt() {
+		RetryOutcome<String> outcome = backoff(1000, 1).backoff(p -> "ok", null, RetryPolicy.retryOnNull());
+		assertEquals(RetryOutcome.Status.SUCCESS, outcome.getStatus());
+		assertEquals("ok", outcome.getValue());
+		assertNull(outcome.getLastError());
+		assertEquals(1, outcome.getAttempts());
+	}
+
+	@Test
+	public void retryUntilSuccess() {
+		AtomicInteger calls = new AtomicInteger();
+		RetryOutcome<String> outcome = backoff(1000, 1).backoff(p -> {
+			if (calls.incrementAndGet() < 3) {
+				throw new IOException("retry");
+			}
+			return "ok";
+		}, null, RetryPolicy.retryOn(IOException.class));
+		assertEquals(RetryOutcome.Status.SUCCESS, outcome.getStatus());
+		assertEquals("ok", outcome.getValue());
+		assertNull(outcome.getLastError());
+		assertEquals(3, outcome.getAttempts());
+	}
+
+	@Test
+	public void fatalStopsImmediately() {
+		IllegalArgumentException error = new IllegalArgumentException("fatal");
+		RetryOutcome<String> outcome = backoff(1000, 1).backoff(p -> {
+			throw error;
+		}, null, RetryPolicy.retryOn(IOException.class));
+		assertEquals(RetryOutcome.Status.FATAL, outcome.getStatus());
+		assertSame(error, outcome.getLastError());
+		assertNull(outcome.getValue());
+		assertEquals(1, outcome.getAttempts());
+	}
+
+	@Test
+	public void giveUpAfterTimeoutKeepsLastError() {
+		AtomicInteger calls = new AtomicInteger();
+		RetryOutcome<String> outcome = backoff(30, 5).backoff(p -> {
+			throw new IOException("attempt " + calls.incrementAndGet());
+		}, null, RetryPolicy.retryOn(IOException.class));
+		assertEquals(RetryOutcome.Status.GIVE_UP, outcome.getStatus());
+		assertEquals(calls.get(), outcome.getAttempts());
+		assertTrue(outcome.getAttempts() > 1);
+		assertEquals("attempt " + calls.get(), outcome.getLastError().getMessage());
+	}
+
+	@Test
+	public void retryAfterIsClampedToRemainingTime() {
+		AtomicInteger calls = new AtomicInteger();
+		RetryOutcome<String> outcome = backoff(100, 1).backoff(p -> {
+			calls.incrementAndGet();
+			return null;
+		}, null, (result, error) -> RetryDecision.retryAfter(10, TimeUnit.SECONDS));
+		assertEquals(RetryOutcome.Status.GIVE_UP, outcome.getStatus());
+		// 建议等待10秒，但只等待剩余的100ms后重试一次，随后超时放弃
+		assertEquals(2, calls.get());
+		assertTrue(outcome.getElapsedTimeInMillis() >= 90);
+		assertTrue(outcome.getElapsedTimeInMillis() < 5000);
+		assertEquals(0, RetryDecision.retryAfter(-5, TimeUnit.MILLISECONDS).getRetryAfterInMillis());
+	}
+
+	@Test
+	public void cancellingAsyncFutureStopsRetries() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		AtomicReference<CompletableFuture<RetryOutcome<String>>> futureRef = new AtomicReference<>();
+		CompletableFuture<RetryOutcome<String>> future = backoff(5000, 50).backoffAsync(p -> {
+			if (calls.incrementAndGet() == 2) {
+				futureRef.get().cancel(false);
+			}
+			return null;
+		}, null, RetryPolicy.retryOnNull());
+		futureRef.set(future);
+		Thread.sleep(300);
+		assertTrue(future.isCancelled());
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void cancellingLegacyAsyncFutureStopsRetries() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		CompletableFuture<String> future = backoff(5000, 50).backoffNullAsync(p -> {
+			calls.incrementAndGet();
+			return null;
+		}, null);
+		assertEquals(1, calls.get());
+		assertTrue(future.cancel(false));
+		Thread.sleep(200);
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void backoffErrorRetriesSubclassesAndSwallowsOthers() {
+		AtomicInteger calls = new AtomicInteger();
+		String value = backoff(1000, 1).backoffError(p -> {
+			if (calls.incrementAndGet() < 3) {
+				throw new FileNotFoundException("retry");
+			}
+			return "ok";
+		}, null, IOException.class);
+		assertEquals("ok", value);
+		assertEquals(3, calls.get());
+		calls.set(0);
+		assertNull(backoff(1000, 1).backoffError(p -> {
+			calls.incrementAndGet();
+			throw new IllegalStateException("fatal");
+		}, null, IOException.class));
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void backoffNullRethrowsFatalErrors() {
+		AtomicInteger calls = new AtomicInteger();
+		assertEquals("ok", backoff(1000, 1).backoffNull(p -> calls.incrementAndGet() < 3 ? null : "ok", null));
+		assertEquals(3, calls.get());
+		assertNull(backoff(20, 5).backoffNull(p -> null, null));
+		calls.set(0);
+		try {
+			backoff(1000, 1).backoffNull(p -> {
+				calls.incrementAndGet();
+				throw new IllegalStateException("fatal");
+			}, null);
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("fatal", e.getMessage());
+		}
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void backoffFalseRethrowsFatalErrors() {
+		AtomicInteger calls = new AtomicInteger();
+		assertTrue(backoff(1000, 1).backoffFalse(p -> calls.incrementAndGet() >= 2, null));
+		assertEquals(2, calls.get());
+		assertFalse(backoff(20, 5).backoffFalse(p -> false, null));
+		try {
+			backoff(1000, 1).backoffFalse(p -> {
+				throw new IllegalStateException("fatal");
+			}, null);
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("fatal", e.getMessage());
+		}
+	}
+
+	private BinaryExponentialBackoff backoff(long timeoutInMillis, long slotInMillis) {
+		return new BinaryExponentialBackoff(timeoutInMillis, slotInMillis, 20, FIXED, scheduler);
+	}
+}
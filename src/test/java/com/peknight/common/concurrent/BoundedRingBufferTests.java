@@ -0,0 +1,107 @@
+package com.peknight.common.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedRingBufferTests {
+
+	@Test
+	public void capacityRoundsUpToPowerOfTwo() {
+		assertEquals(8, new BoundedRingBuffer<Integer>(5).capacity());
+		assertEquals(8, new BoundedRingBuffer<Integer>(8).capacity());
+	}
+
+	@Test
+	public void offerFailsWhenFullAndPollIsFifo() {
+		BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+		assertTrue(buffer.isEmpty());
+		assertNull(buffer.poll());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(i));
+		}
+		assertFalse(buffer.offer(4));
+		assertEquals(4, buffer.size());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(Integer.valueOf(i), buffer.poll());
+		}
+		assertNull(buffer.poll());
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void wrapsAroundManyTimes() {
+		BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+		int next = 0;
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(buffer.offer(i));
+			if (i % 3 == 2) {
+				assertEquals(Integer.valueOf(next++), buffer.poll());
+				assertEquals(Integer.valueOf(next++), buffer.poll());
+				assertEquals(Integer.valueOf(next++), buffer.poll());
+			}
+		}
+		Integer value;
+		while ((value = buffer.poll()) != null) {
+			assertEquals(Integer.valueOf(next++), value);
+		}
+		assertEquals(1000, next);
+	}
+
+	@Test
+	public void concurrentProducersAndConsumersDeliverEachElementOnce() throws Exception {
+		int producers = 4;
+		int consumers = 4;
+		int perProducer = 50000;
+		int total = producers * perProducer;
+		BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(64);
+		AtomicIntegerArray seen = new AtomicIntegerArray(total);
+		AtomicInteger consumed = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			int base = p * perProducer;
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < perProducer; i++) {
+					while (!buffer.offer(base + i)) {
+						Thread.yield();
+					}
+				}
+			}));
+		}
+		for (int c = 0; c < consumers; c++) {
+			futures.add(executor.submit(() -> {
+				while (consumed.get() < total) {
+					Integer value = buffer.poll();
+					if (value == null) {
+						Thread.yield();
+					} else {
+						seen.incrementAndGet(value);
+						consumed.incrementAndGet();
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(60, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+		assertEquals(total, consumed.get());
+		for (int i = 0; i < total; i++) {
+			assertEquals(1, seen.get(i));
+		}
+		assertTrue(buffer.isEmpty());
+	}
+}
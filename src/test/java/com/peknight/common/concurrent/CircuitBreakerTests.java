@@ -0,0 +1,92 @@
+package com.peknight.common.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTests {
+
+	@Test
+	public void opensAfterConsecutiveFailures() {
+		CircuitBreaker breaker = new CircuitBreaker(3, 1, TimeUnit.MINUTES);
+		breaker.recordFailure();
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		breaker.recordFailure();
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+	}
+
+	@Test
+	public void lateSuccessDoesNotCloseOpenBreaker() {
+		CircuitBreaker breaker = new CircuitBreaker(1, 1, TimeUnit.MINUTES);
+		breaker.recordFailure();
+		breaker.recordSuccess();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(0, breaker.getCloseCount());
+	}
+
+	@Test
+	public void halfOpenProbeClosesOnSuccess() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1, 20, TimeUnit.MILLISECONDS);
+		breaker.recordFailure();
+		Thread.sleep(40);
+		assertTrue(breaker.allowRequest());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertFalse(breaker.allowRequest());
+		breaker.recordSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(1, breaker.getCloseCount());
+	}
+
+	@Test
+	public void halfOpenProbeReopensOnFailure() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1, 20, TimeUnit.MILLISECONDS);
+		breaker.recordFailure();
+		Thread.sleep(40);
+		assertTrue(breaker.allowRequest());
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(2, breaker.getOpenCount());
+	}
+
+	@Test
+	public void onlyAdmittedProbeDecidesHalfOpen() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1, 20, TimeUnit.MILLISECONDS);
+		long normal = breaker.acquirePermit();
+		assertEquals(CircuitBreaker.NORMAL_PERMIT, normal);
+		breaker.recordFailure(breaker.acquirePermit());
+		Thread.sleep(40);
+		long probe = breaker.acquirePermit();
+		assertTrue(probe > 0);
+		assertEquals(CircuitBreaker.REJECTED, breaker.acquirePermit());
+		// 熔断前放行的调用迟到的结果不影响半开状态
+		breaker.recordSuccess(normal);
+		breaker.recordFailure(normal);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		breaker.recordSuccess(probe);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void timedOutProbeIsReplaced() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1, 20, TimeUnit.MILLISECONDS);
+		breaker.recordFailure(breaker.acquirePermit());
+		Thread.sleep(40);
+		long lostProbe = breaker.acquirePermit();
+		Thread.sleep(40);
+		long probe = breaker.acquirePermit();
+		assertTrue(probe > lostProbe);
+		breaker.recordSuccess(lostProbe);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		breaker.recordFailure(probe);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+}
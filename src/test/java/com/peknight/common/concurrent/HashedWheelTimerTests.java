@@ -0,0 +1,87 @@
+package com.peknight.common.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashedWheelTimerTests {
+
+	private HashedWheelTimer timer;
+
+	@Before
+	public void setUp() {
+		timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8);
+	}
+
+	@After
+	public void tearDown() {
+		timer.stop();
+	}
+
+	@Test
+	public void timeoutFiresAfterDelay() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+		HashedWheelTimer.Timeout timeout = timer.newTimeout(latch::countDown, 50, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+		assertTrue(timeout.isExpired());
+		assertFalse(timeout.cancel());
+	}
+
+	@Test
+	public void timeoutBeyondOneRoundFires() throws InterruptedException {
+		// 8格 * 10毫秒，200毫秒需要经过多轮
+		CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+		timer.newTimeout(latch::countDown, 200, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+	}
+
+	@Test
+	public void cancelledTimeoutDoesNotFire() throws InterruptedException {
+		AtomicInteger fired = new AtomicInteger();
+		HashedWheelTimer.Timeout cancelled = timer.newTimeout(fired::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+		CountDownLatch latch = new CountDownLatch(1);
+		timer.newTimeout(latch::countDown, 60, TimeUnit.MILLISECONDS);
+		assertTrue(cancelled.cancel());
+		assertFalse(cancelled.cancel());
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertEquals(0, fired.get());
+		assertTrue(cancelled.isCancelled());
+		assertFalse(cancelled.isExpired());
+	}
+
+	@Test
+	public void stopDiscardsPendingTimeouts() throws InterruptedException {
+		AtomicInteger fired = new AtomicInteger();
+		timer.newTimeout(fired::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+		assertTrue(timer.isRunning());
+		timer.stop();
+		assertFalse(timer.isRunning());
+		Thread.sleep(200);
+		assertEquals(0, fired.get());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void newTimeoutAfterStopThrows() {
+		timer.newTimeout(() -> { }, 10, TimeUnit.MILLISECONDS);
+		timer.stop();
+		timer.newTimeout(() -> { }, 10, TimeUnit.MILLISECONDS);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void newTimeoutOnStoppedUnstartedTimerThrows() {
+		timer.stop();
+		timer.newTimeout(() -> { }, 10, TimeUnit.MILLISECONDS);
+	}
+}
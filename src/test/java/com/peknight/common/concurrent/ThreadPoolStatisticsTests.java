@@ -0,0 +1,111 @@
+package com.peknight.common.concurrent;
+
+import com.peknight.common.metrics.MetricsRegistry;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadPoolStatisticsTests {
+
+	@Test
+	public void callerRunsPoolCountsRejectionsAndQueueWait() throws Exception {
+		InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("stats-test", 1, 1, 0,
+				TimeUnit.SECONDS, new ArrayBlockingQueue<>(1), Executors.defaultThreadFactory(),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(3);
+		executor.execute(() -> {
+			await(release);
+			done.countDown();
+		});
+		executor.execute(done::countDown);
+		// 线程及队列都已占满，由提交线程执行
+		executor.execute(done::countDown);
+		assertEquals(2, done.getCount());
+		Thread.sleep(50);
+		release.countDown();
+		assertTrue(done.await(2, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(2, TimeUnit.SECONDS));
+		ThreadPoolStatistics statistics = executor.getStatistics();
+		assertEquals(3, statistics.getSubmittedCount());
+		assertEquals(1, statistics.getRejectedCount());
+		assertEquals(3, statistics.getCompletedCount());
+		assertEquals(0, statistics.getFailedCount());
+		assertEquals(3, statistics.getQueueWaitSnapshot().getCount());
+		// 排队的任务至少等待了第一个任务被阻塞的时间
+		assertTrue(statistics.getMaxQueueWaitTime() >= TimeUnit.MILLISECONDS.toNanos(40));
+	}
+
+	@Test
+	public void shutdownNowReturnsOriginalTasks() {
+		InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("stats-shutdown", 1, 1, 0,
+				TimeUnit.SECONDS, new ArrayBlockingQueue<>(4), Executors.defaultThreadFactory(),
+				new ThreadPoolExecutor.AbortPolicy());
+		CountDownLatch release = new CountDownLatch(1);
+		executor.execute(() -> await(release));
+		Runnable queued = () -> { };
+		executor.execute(queued);
+		List<Runnable> tasks = executor.shutdownNow();
+		release.countDown();
+		assertEquals(1, tasks.size());
+		assertSame(queued, tasks.get(0));
+	}
+
+	@Test
+	public void decoratorRunsBeforeStatistics() throws Exception {
+		InstrumentedTaskExecutor executor = new InstrumentedTaskExecutor("stats-decorator");
+		CountDownLatch decorated = new CountDownLatch(1);
+		executor.setTaskDecorator(runnable -> () -> {
+			decorated.countDown();
+			runnable.run();
+		});
+		executor.initialize();
+		CountDownLatch ran = new CountDownLatch(1);
+		executor.execute(ran::countDown);
+		assertTrue(ran.await(2, TimeUnit.SECONDS));
+		assertEquals(0, decorated.getCount());
+		executor.shutdown();
+		assertEquals(1, executor.getStatistics().getSubmittedCount());
+	}
+
+	@Test
+	public void duplicateNamesAreReservedBeforeInitialize() {
+		InstrumentedTaskExecutor first = new InstrumentedTaskExecutor("stats-duplicate");
+		InstrumentedTaskExecutor second = new InstrumentedTaskExecutor("stats-duplicate");
+		assertNotEquals(first.getStatistics().getPoolName(), second.getStatistics().getPoolName());
+		first.initialize();
+		second.initialize();
+		ObjectName firstName = MetricsRegistry.objectName("com.peknight.common.concurrent", "ThreadPool",
+				"name", first.getStatistics().getPoolName());
+		ObjectName secondName = MetricsRegistry.objectName("com.peknight.common.concurrent", "ThreadPool",
+				"name", second.getStatistics().getPoolName());
+		assertTrue(MetricsRegistry.getNames().contains(firstName));
+		assertTrue(MetricsRegistry.getNames().contains(secondName));
+		second.shutdown();
+		assertTrue(MetricsRegistry.getNames().contains(firstName));
+		assertFalse(MetricsRegistry.getNames().contains(secondName));
+		first.shutdown();
+		assertFalse(MetricsRegistry.getNames().contains(firstName));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
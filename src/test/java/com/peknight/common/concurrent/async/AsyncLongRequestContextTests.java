@@ -0,0 +1,98 @@
+package com.peknight.common.concurrent.async;
+
+import com.peknight.common.concurrent.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncLongRequestContextTests {
+
+	private HashedWheelTimer timer;
+
+	@Before
+	public void setUp() {
+		timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8);
+	}
+
+	@After
+	public void tearDown() {
+		timer.stop();
+	}
+
+	@Test
+	public void batchTimesOutUnreleasedRequests() throws Exception {
+		AsyncLongRequestContext<String> context =
+				new AsyncLongRequestContext<>(new AtomicLong(), 16, timer, 50, TimeUnit.MILLISECONDS);
+		List<AsyncLongRequest<String>> requests = context.createRequests(3);
+		context.releaseRequest(requests.get(0).getRequestId(), "ok");
+		assertEquals("ok", requests.get(0).getValue());
+		for (AsyncLongRequest<String> request : requests.subList(1, 3)) {
+			request.handle((v, t) -> v).get(2, TimeUnit.SECONDS);
+			assertTrue(request.isTimedOut());
+		}
+		assertEquals(2, context.getTimeoutCount());
+	}
+
+	@Test
+	public void releasingWholeBatchCancelsTimeout() {
+		AsyncLongRequestContext<String> context =
+				new AsyncLongRequestContext<>(new AtomicLong(), 16, timer, 1, TimeUnit.MINUTES);
+		List<AsyncLongRequest<String>> requests = context.createRequests(2);
+		HashedWheelTimer.Timeout timeout = requests.get(0).batch.timeout();
+		context.releaseRequest(requests.get(0).getRequestId(), "a");
+		assertFalse(timeout.isCancelled());
+		context.releaseRequest(requests.get(1).getRequestId(), "b");
+		assertTrue(timeout.isCancelled());
+	}
+
+	@Test
+	public void cancelRemovesRequestAndExpiry() {
+		AsyncLongRequestContext<String> context =
+				new AsyncLongRequestContext<>(new AtomicLong(), 16, timer, 1, TimeUnit.MINUTES);
+		AsyncLongRequest<String> request = context.createRequest();
+		assertTrue(request.cancel(false));
+		assertTrue(request.expiry.isCancelled());
+		context.releaseRequest(request.getRequestId(), "late");
+		assertEquals(1, context.getLateResponseCount());
+		assertTrue(request.isCancelled());
+	}
+
+	@Test
+	public void directCompletionRemovesRequestAndExpiry() {
+		AsyncLongRequestContext<String> context =
+				new AsyncLongRequestContext<>(new AtomicLong(), 16, timer, 1, TimeUnit.MINUTES);
+		AsyncLongRequest<String> completed = context.createRequest();
+		assertTrue(completed.complete("direct"));
+		assertTrue(completed.expiry.isCancelled());
+		AsyncLongRequest<String> failed = context.createRequest();
+		assertTrue(failed.fail(new IllegalStateException()));
+		assertTrue(failed.expiry.isCancelled());
+		context.releaseRequest(completed.getRequestId(), "late");
+		context.releaseRequest(failed.getRequestId(), "late");
+		assertEquals(2, context.getLateResponseCount());
+		assertEquals("direct", completed.getValue());
+	}
+
+	@Test
+	public void directCompletionReleasesBatch() {
+		AsyncLongRequestContext<String> context =
+				new AsyncLongRequestContext<>(new AtomicLong(), 16, timer, 1, TimeUnit.MINUTES);
+		List<AsyncLongRequest<String>> requests = context.createRequests(2);
+		HashedWheelTimer.Timeout timeout = requests.get(0).batch.timeout();
+		assertTrue(requests.get(0).timeout());
+		assertFalse(timeout.isCancelled());
+		// 已完成的请求不会重复释放批次
+		context.releaseRequest(requests.get(0).getRequestId(), "late");
+		assertFalse(timeout.isCancelled());
+		assertTrue(requests.get(1).complete("b"));
+		assertTrue(timeout.isCancelled());
+	}
+}
@@ -0,0 +1,81 @@
+package com.peknight.common.concurrent.async;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IntegerRequestIdAllocatorTests {
+
+	private static final int THREADS = 8;
+
+	private static final int IDS_PER_THREAD = 10000;
+
+	@Test
+	public void idsAreUniqueAcrossThreads() throws Exception {
+		assertUnique(new IntegerRequestIdAllocator(new AtomicInteger(), 1));
+	}
+
+	@Test
+	public void blockIdsAreUniqueAcrossThreads() throws Exception {
+		assertUnique(new IntegerRequestIdAllocator(new AtomicInteger(), 16));
+	}
+
+	@Test
+	public void nextWrapsToZeroAfterMaxValue() {
+		IntegerRequestIdAllocator allocator = new IntegerRequestIdAllocator(new AtomicInteger(Integer.MAX_VALUE - 1));
+		assertEquals(Integer.MAX_VALUE, allocator.next());
+		assertEquals(0, allocator.next());
+		assertEquals(1, allocator.next());
+	}
+
+	@Test
+	public void reserveDoesNotCrossMaxValue() {
+		AtomicInteger requestCount = new AtomicInteger(Integer.MAX_VALUE - 10);
+		IntegerRequestIdAllocator allocator = new IntegerRequestIdAllocator(requestCount);
+		assertEquals(Integer.MAX_VALUE - 9, allocator.reserve(10));
+		assertEquals(Integer.MAX_VALUE, requestCount.get());
+		// 剩余的id不足一段时从0开始分配整段
+		requestCount.set(Integer.MAX_VALUE - 3);
+		assertEquals(0, allocator.reserve(10));
+		assertEquals(9, requestCount.get());
+	}
+
+	@Test
+	public void blockEndingAtMaxValueWrapsToZero() {
+		IntegerRequestIdAllocator allocator = new IntegerRequestIdAllocator(new AtomicInteger(Integer.MAX_VALUE - 4), 4);
+		for (int expected = Integer.MAX_VALUE - 3; expected > 0; expected++) {
+			assertEquals(expected, allocator.next());
+		}
+		assertEquals(0, allocator.next());
+		assertEquals(1, allocator.next());
+	}
+
+	private static void assertUnique(IntegerRequestIdAllocator allocator) throws Exception {
+		Set<Integer> ids = ConcurrentHashMap.newKeySet();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(THREADS);
+		for (int i = 0; i < THREADS; i++) {
+			new Thread(() -> {
+				try {
+					start.await();
+					for (int j = 0; j < IDS_PER_THREAD; j++) {
+						ids.add(allocator.next());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			}).start();
+		}
+		start.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+	}
+}
@@ -0,0 +1,81 @@
+package com.peknight.common.concurrent.async;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LongRequestIdAllocatorTests {
+
+	private static final int THREADS = 8;
+
+	private static final int IDS_PER_THREAD = 10000;
+
+	@Test
+	public void idsAreUniqueAcrossThreads() throws Exception {
+		assertUnique(new LongRequestIdAllocator(new AtomicLong(), 1));
+	}
+
+	@Test
+	public void blockIdsAreUniqueAcrossThreads() throws Exception {
+		assertUnique(new LongRequestIdAllocator(new AtomicLong(), 16));
+	}
+
+	@Test
+	public void nextWrapsToZeroAfterMaxValue() {
+		LongRequestIdAllocator allocator = new LongRequestIdAllocator(new AtomicLong(Long.MAX_VALUE - 1));
+		assertEquals(Long.MAX_VALUE, allocator.next());
+		assertEquals(0L, allocator.next());
+		assertEquals(1L, allocator.next());
+	}
+
+	@Test
+	public void reserveDoesNotCrossMaxValue() {
+		AtomicLong requestCount = new AtomicLong(Long.MAX_VALUE - 10);
+		LongRequestIdAllocator allocator = new LongRequestIdAllocator(requestCount);
+		assertEquals(Long.MAX_VALUE - 9, allocator.reserve(10));
+		assertEquals(Long.MAX_VALUE, requestCount.get());
+		// 剩余的id不足一段时从0开始分配整段
+		requestCount.set(Long.MAX_VALUE - 3);
+		assertEquals(0L, allocator.reserve(10));
+		assertEquals(9L, requestCount.get());
+	}
+
+	@Test
+	public void blockEndingAtMaxValueWrapsToZero() {
+		LongRequestIdAllocator allocator = new LongRequestIdAllocator(new AtomicLong(Long.MAX_VALUE - 4), 4);
+		for (long expected = Long.MAX_VALUE - 3; expected > 0; expected++) {
+			assertEquals(expected, allocator.next());
+		}
+		assertEquals(0L, allocator.next());
+		assertEquals(1L, allocator.next());
+	}
+
+	private static void assertUnique(LongRequestIdAllocator allocator) throws Exception {
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(THREADS);
+		for (int i = 0; i < THREADS; i++) {
+			new Thread(() -> {
+				try {
+					start.await();
+					for (int j = 0; j < IDS_PER_THREAD; j++) {
+						ids.add(allocator.next());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			}).start();
+		}
+		start.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+	}
+}
@@ -0,0 +1,73 @@
+package com.peknight.common.concurrent.async;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RingRequestTableTests {
+
+	@Test
+	public void slotCollisionGoesToOverflow() {
+		RingRequestTable<AsyncLongRequest<String>> table = new RingRequestTable<>(4);
+		AsyncLongRequest<String> first = new AsyncLongRequest<>(1L);
+		// 1和5落在同一槽位，槽位被占用时放入溢出Map
+		AsyncLongRequest<String> second = new AsyncLongRequest<>(5L);
+		table.put(first);
+		table.put(second);
+		assertEquals(2, table.size());
+		assertSame(second, table.remove(5L));
+		assertSame(first, table.remove(1L));
+		assertNull(table.remove(5L));
+		assertEquals(0, table.size());
+	}
+
+	@Test
+	public void staleIdDoesNotMatchReusedSlot() {
+		RingRequestTable<AsyncLongRequest<String>> table = new RingRequestTable<>(4);
+		AsyncLongRequest<String> stale = new AsyncLongRequest<>(1L);
+		table.put(stale);
+		assertSame(stale, table.remove(1L));
+		AsyncLongRequest<String> current = new AsyncLongRequest<>(5L);
+		table.put(current);
+		assertNull(table.remove(1L));
+		assertFalse(table.remove(stale));
+		assertEquals(1, table.size());
+		assertSame(current, table.remove(5L));
+	}
+
+	@Test
+	public void removeThenReinsert() {
+		RingRequestTable<AsyncLongRequest<String>> table = new RingRequestTable<>(4);
+		AsyncLongRequest<String> request = new AsyncLongRequest<>(2L);
+		table.put(request);
+		assertTrue(table.remove(request));
+		assertFalse(table.remove(request));
+		assertEquals(0, table.size());
+		table.put(request);
+		assertEquals(1, table.size());
+		assertSame(request, table.remove(2L));
+		// 溢出的请求删除后重新放入时使用已空出的槽位
+		AsyncLongRequest<String> occupant = new AsyncLongRequest<>(3L);
+		AsyncLongRequest<String> overflowed = new AsyncLongRequest<>(7L);
+		table.put(occupant);
+		table.put(overflowed);
+		assertTrue(table.remove(overflowed));
+		assertTrue(table.remove(occupant));
+		table.put(overflowed);
+		assertSame(overflowed, table.remove(7L));
+		assertEquals(0, table.size());
+	}
+
+	@Test
+	public void negativeIntegerIdsMapToSlots() {
+		RingRequestTable<AsyncIntegerRequest<String>> table = new RingRequestTable<>(3);
+		AsyncIntegerRequest<String> request = new AsyncIntegerRequest<>(Integer.MIN_VALUE + 1);
+		table.put(request);
+		assertSame(request, table.remove(Integer.MIN_VALUE + 1));
+		assertNull(table.remove(Integer.MIN_VALUE + 1));
+	}
+}
@@ -0,0 +1,92 @@
+package com.peknight.common.concurrent.lock;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class IdentityLockTableTests {
+
+	@Test
+	public void referenceCountsAndRemovesAtZero() {
+		IdentityLockTable table = new IdentityLockTable(false);
+		IdentityReentrantLock lock = table.reference(1L);
+		assertSame(lock, table.reference(1L));
+		assertEquals(1, table.size());
+		assertSame(lock, table.dereference(1L, false));
+		assertSame(lock, table.get(1L));
+		assertSame(lock, table.dereference(1L, false));
+		assertNull(table.get(1L));
+		assertNull(table.dereference(1L, false));
+		assertEquals(0, table.size());
+	}
+
+	@Test
+	public void removeShiftsBackAcrossArrayEnd() {
+		// 同一分段且都落在分段数组最后一个位置的id，后两个探测时绕回数组开头
+		long[] ids = new long[3];
+		int found = 0;
+		int target = -1;
+		for (long id = 0; found < ids.length; id++) {
+			int hash = IdentityReentrantLock.hash(id);
+			if ((hash & 15) == 15 && (found == 0 || hash >>> 16 == target)) {
+				target = hash >>> 16;
+				ids[found++] = id;
+			}
+		}
+		IdentityLockTable table = new IdentityLockTable(false);
+		List<IdentityReentrantLock> locks = new ArrayList<>();
+		for (long id : ids) {
+			locks.add(table.reference(id));
+		}
+		table.dereference(ids[0], false);
+		assertNull(table.get(ids[0]));
+		assertSame(locks.get(1), table.get(ids[1]));
+		assertSame(locks.get(2), table.get(ids[2]));
+		table.dereference(ids[2], false);
+		assertSame(locks.get(1), table.get(ids[1]));
+		assertNull(table.get(ids[2]));
+		table.dereference(ids[1], false);
+		assertEquals(0, table.size());
+	}
+
+	@Test
+	public void growsAndShrinksWithoutLosingEntries() {
+		IdentityLockTable table = new IdentityLockTable(false);
+		List<Long> ids = new ArrayList<>();
+		for (long id = 0; id < 10000; id++) {
+			ids.add(id * 31);
+			table.reference(id * 31);
+		}
+		assertEquals(10000, table.size());
+		Collections.shuffle(ids, new Random(42));
+		for (int i = 0; i < 9000; i++) {
+			assertNotNull(table.dereference(ids.get(i), false));
+		}
+		assertEquals(1000, table.size());
+		for (int i = 0; i < ids.size(); i++) {
+			if (i < 9000) {
+				assertNull(table.get(ids.get(i)));
+			} else {
+				assertNotNull(table.get(ids.get(i)));
+			}
+		}
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void unlockWithoutLockThrows() {
+		new IdentityLongLock().unlock(7L);
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void integerUnlockWithoutLockThrows() {
+		new IdentityIntegerLock().unlock(7);
+	}
+}
@@ -0,0 +1,61 @@
+package com.peknight.common.concurrent.lock;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdentityReentrantLockTests {
+
+	@Test
+	public void reentrantAndReleasedByLastUnlock() throws Exception {
+		IdentityReentrantLock lock = new IdentityReentrantLock(false);
+		lock.lock();
+		assertTrue(lock.tryLock());
+		assertTrue(lock.isHeldByCurrentThread());
+		AtomicBoolean acquired = new AtomicBoolean();
+		Thread other = new Thread(() -> acquired.set(lock.tryLock()));
+		other.start();
+		other.join();
+		assertFalse(acquired.get());
+		lock.unlock();
+		assertTrue(lock.isLocked());
+		lock.unlock();
+		assertFalse(lock.isLocked());
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void unlockByNonOwnerFails() {
+		new IdentityReentrantLock(true).unlock();
+	}
+
+	@Test
+	public void fairLockQueuesWaiters() throws Exception {
+		IdentityReentrantLock lock = new IdentityReentrantLock(true);
+		assertTrue(lock.isFair());
+		lock.lock();
+		CountDownLatch done = new CountDownLatch(1);
+		Thread waiter = new Thread(() -> {
+			try {
+				if (lock.tryLock(2, TimeUnit.SECONDS)) {
+					lock.unlock();
+					done.countDown();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		waiter.start();
+		while (lock.getQueueLength() == 0) {
+			Thread.sleep(1);
+		}
+		assertEquals(1, lock.getQueueLength());
+		lock.unlock();
+		assertTrue(done.await(2, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,134 @@
+package com.peknight.common.concurrent.lock;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdentitySignalTests {
+
+	@Test
+	public void signalHandsOffToWaiter() throws Exception {
+		IdentitySignal signal = new IdentitySignal();
+		assertTrue(signal.tryAwait(1L));
+		AtomicBoolean acquired = new AtomicBoolean();
+		Thread waiter = new Thread(() -> {
+			signal.await(1L);
+			acquired.set(true);
+		});
+		waiter.start();
+		waitUntilParked(waiter);
+		assertFalse(acquired.get());
+		signal.signal(1L);
+		waiter.join(2000);
+		assertTrue(acquired.get());
+		// 信号交给了等待线程，而不是恢复为有信号
+		assertFalse(signal.isSignalled(1L));
+		assertEquals(1, signal.size());
+		signal.signal(1L);
+		assertTrue(signal.isSignalled(1L));
+	}
+
+	@Test
+	public void timedAwaitExpires() throws Exception {
+		IdentitySignal signal = new IdentitySignal();
+		assertTrue(signal.await(2L, 10, TimeUnit.MILLISECONDS));
+		long start = System.nanoTime();
+		assertFalse(signal.await(2L, 30, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+		// 超时的等待节点已移出队列，signal恢复为有信号
+		signal.signal(2L);
+		assertTrue(signal.isSignalled(2L));
+		assertEquals(0, signal.size());
+	}
+
+	@Test
+	public void interruptWhileWaiting() throws Exception {
+		IdentitySignal signal = new IdentitySignal();
+		assertTrue(signal.tryAwait(3L));
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		CountDownLatch done = new CountDownLatch(1);
+		Thread waiter = new Thread(() -> {
+			try {
+				signal.await(3L, 10, TimeUnit.SECONDS);
+			} catch (Throwable e) {
+				failure.set(e);
+			}
+			done.countDown();
+		});
+		waiter.start();
+		waitUntilParked(waiter);
+		waiter.interrupt();
+		assertTrue(done.await(2, TimeUnit.SECONDS));
+		assertTrue(failure.get() instanceof InterruptedException);
+		signal.signal(3L);
+		assertTrue(signal.isSignalled(3L));
+	}
+
+	@Test
+	public void uninterruptibleAwaitKeepsInterruptStatus() throws Exception {
+		IdentitySignal signal = new IdentitySignal();
+		assertTrue(signal.tryAwait(4L));
+		AtomicBoolean interrupted = new AtomicBoolean();
+		Thread waiter = new Thread(() -> {
+			signal.await(4L);
+			interrupted.set(Thread.currentThread().isInterrupted());
+		});
+		waiter.start();
+		waitUntilParked(waiter);
+		waiter.interrupt();
+		Thread.sleep(20);
+		assertTrue(waiter.isAlive());
+		signal.signal(4L);
+		waiter.join(2000);
+		assertTrue(interrupted.get());
+	}
+
+	@Test
+	public void reclaimsWhenNobodyWaits() {
+		IdentitySignal signal = new IdentitySignal();
+		for (long id = 0; id < 1000; id++) {
+			assertTrue(signal.tryAwait(id));
+		}
+		assertEquals(1000, signal.size());
+		for (long id = 0; id < 1000; id++) {
+			signal.signal(id);
+		}
+		assertEquals(0, signal.size());
+		// 多次signal不累加
+		signal.signal(5L);
+		assertTrue(signal.tryAwait(5L));
+		assertFalse(signal.tryAwait(5L));
+	}
+
+	@Test
+	public void clearRestoresSignalOnlyWithoutWaiters() throws Exception {
+		IdentitySignal signal = new IdentitySignal();
+		assertTrue(signal.tryAwait(6L));
+		assertTrue(signal.clear(6L));
+		assertTrue(signal.isSignalled(6L));
+		assertEquals(0, signal.size());
+		assertTrue(signal.tryAwait(6L));
+		Thread waiter = new Thread(() -> signal.await(6L));
+		waiter.start();
+		waitUntilParked(waiter);
+		assertFalse(signal.clear(6L));
+		signal.signal(6L);
+		waiter.join(2000);
+		assertFalse(waiter.isAlive());
+	}
+
+	private static void waitUntilParked(Thread thread) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+		while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+			assertTrue(System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.peknight.common.concurrent.lock;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LockContentionStatisticsTests {
+
+	@Test
+	public void newIdReplacesColdestWhenFull() {
+		LockContentionStatistics statistics = new LockContentionStatistics(3);
+		statistics.record(1, 300, 0, true);
+		statistics.record(2, 100, 0, true);
+		statistics.record(3, 200, 0, true);
+		statistics.record(4, 50, 0, true);
+		assertNull(statistics.getContention(2));
+		LockContentionStatistics.IdContention contention = statistics.getContention(4);
+		assertNotNull(contention);
+		assertEquals(50, contention.getTotalWaitTime());
+		assertEquals(100, contention.getInheritedWaitTime());
+		assertEquals(150, contention.getEstimatedWaitTime());
+		assertEquals(1, statistics.getUntrackedCount());
+		assertEquals(4, statistics.getContendedCount());
+	}
+
+	@Test
+	public void hotIdIsTrackedAfterTableFilledByColdIds() {
+		LockContentionStatistics statistics = new LockContentionStatistics(8);
+		for (long id = 0; id < 1000; id++) {
+			statistics.record(id, 10, 0, true);
+			statistics.record(-1, 100, 1, true);
+		}
+		List<LockContentionStatistics.IdContention> hotIds = statistics.getHotIds(1);
+		assertEquals(-1, hotIds.get(0).getId());
+		assertEquals(1000 * 100, hotIds.get(0).getTotalWaitTime());
+	}
+}
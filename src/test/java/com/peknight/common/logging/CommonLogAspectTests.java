@@ -0,0 +1,55 @@
+package com.peknight.common.logging;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CommonLogAspectTests {
+
+	public String greet(String name) {
+		return "hello " + name;
+	}
+
+	@Test
+	public void plansAreCachedPerLevel() throws Throwable {
+		Method method = CommonLogAspectTests.class.getMethod("greet", String.class);
+		ProceedingJoinPoint joinPoint = joinPoint(method);
+		CommonLogAspect.commonLog(joinPoint, LoggerFactory.getLogger(CommonLogAspectTests.class), Level.DEBUG);
+		CommonLogAspect.commonLog(joinPoint, LoggerFactory.getLogger(CommonLogAspectTests.class), Level.INFO);
+		CommonLogAspect.commonLog(joinPoint, LoggerFactory.getLogger(CommonLogAspectTests.class), Level.INFO);
+		long debugCalls = 0;
+		long infoCalls = 0;
+		for (MethodStatistics statistics : CommonLogAspect.getAllStatistics()) {
+			if (statistics.getMethod().equals(method)) {
+				if ("DEBUG".equals(statistics.getLevel())) {
+					debugCalls += statistics.getCallCount();
+				} else if ("INFO".equals(statistics.getLevel())) {
+					infoCalls += statistics.getCallCount();
+				}
+			}
+		}
+		assertEquals(1, debugCalls);
+		assertEquals(2, infoCalls);
+		assertTrue(CommonLogAspect.getStatistics(method) != null);
+	}
+
+	private ProceedingJoinPoint joinPoint(Method method) throws Throwable {
+		MethodSignature signature = mock(MethodSignature.class);
+		when(signature.getMethod()).thenReturn(method);
+		when(signature.getParameterTypes()).thenReturn(method.getParameterTypes());
+		when(signature.getParameterNames()).thenReturn(new String[]{"name"});
+		ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+		when(joinPoint.getSignature()).thenReturn(signature);
+		when(joinPoint.getArgs()).thenReturn(new Object[]{"world"});
+		when(joinPoint.proceed()).thenReturn("hello world");
+		return joinPoint;
+	}
+}
@@ -0,0 +1,78 @@
+package com.peknight.common.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTests {
+
+	@Test
+	public void percentilesWithinRelativeError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 10000; i++) {
+			histogram.record(i * 1000);
+		}
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(10000, snapshot.getCount());
+		assertEquals(10000L * 1000, snapshot.getMaxValue());
+		long p50 = snapshot.getP50();
+		long error = 5000L * 1000 / LatencyHistogram.SUB_BUCKET_COUNT;
+		assertTrue(String.valueOf(p50), Math.abs(p50 - 5000L * 1000) <= error);
+	}
+
+	@Test
+	public void sinceReturnsRecordsOfWindow() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 100; i++) {
+			histogram.record(10);
+		}
+		HistogramSnapshot start = histogram.snapshot();
+		for (int i = 0; i < 100; i++) {
+			histogram.record(1000);
+		}
+		HistogramSnapshot window = histogram.snapshot().since(start);
+		assertEquals(100, window.getCount());
+		assertEquals(1000, window.getP50());
+		assertEquals(100 * 1000, window.getTotalValue());
+		// 重置后计数减少，返回当前快照
+		histogram.snapshotAndReset();
+		histogram.record(5);
+		assertEquals(1, histogram.snapshot().since(start).getCount());
+	}
+
+	@Test
+	public void concurrentRecordsAreNotLost() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram(1000, 8);
+		int threads = 8;
+		int perThread = 200000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < perThread; i++) {
+					// 集中在少数几个桶上制造竞争
+					histogram.record(i & 3);
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		assertEquals((long) threads * perThread, histogram.snapshot().getCount());
+		assertEquals((long) threads * perThread, histogram.snapshotAndReset().getCount());
+		assertEquals(0, histogram.snapshot().getCount());
+	}
+}